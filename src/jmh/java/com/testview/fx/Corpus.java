@@ -0,0 +1,132 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Documents FXML générés pour les benchmarks: mêmes constructions que de vrais écrans
+ * (contrôleur, handlers, fx:id, commentaires, entités, @ressources, stylesheets),
+ * répétées jusqu'à la taille voulue. Déterministe: deux appels donnent le même texte.
+ */
+final class Corpus {
+
+    private Corpus() {}
+
+    /** Forme d'un document généré. */
+    enum Shape {
+        /** Écran ordinaire, quelques Ko. */
+        SMALL(4 * 1024, false, false),
+        /** Écran ordinaire, 1 Mo. */
+        MEDIUM(1024 * 1024, false, false),
+        /** Écran ordinaire, 20 Mo. */
+        LARGE(20 * 1024 * 1024, false, false),
+        /** Un bloc stylesheets par ligne (String et URL, chemins @). */
+        STYLESHEETS(1024 * 1024, true, false),
+        /** Une image @ressource et des attributs source/href par ligne. */
+        RESOURCES(1024 * 1024, false, true);
+
+        final int targetBytes;
+        final boolean stylesheets;
+        final boolean resources;
+
+        Shape(int targetBytes, boolean stylesheets, boolean resources) {
+            this.targetBytes = targetBytes;
+            this.stylesheets = stylesheets;
+            this.resources = resources;
+        }
+    }
+
+    static String document(Shape shape) {
+        StringBuilder sb = new StringBuilder(shape.targetBytes + 4096);
+        header(sb);
+        sb.append("<BorderPane xmlns=\"http://javafx.com/javafx/21\" xmlns:fx=\"http://javafx.com/fxml/1\"\n")
+          .append("            fx:controller=\"com.example.ScreenController\" prefWidth=\"800\" prefHeight=\"600\">\n")
+          .append("  <stylesheets>\n    <String>@theme.css</String>\n  </stylesheets>\n")
+          .append("  <fx:script>function init() { return 1 &lt; 2; }</fx:script>\n")
+          .append("  <center>\n    <VBox fx:id=\"rows\" spacing=\"4\" onMouseClicked=\"#onRows\">\n");
+        for (int i = 0; sb.length() < shape.targetBytes; i++) {
+            row(sb, i, shape);
+        }
+        sb.append("    </VBox>\n  </center>\n</BorderPane>\n");
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb) {
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+          .append("<?import javafx.scene.control.*?>\n")
+          .append("<?import javafx.scene.image.*?>\n")
+          .append("<?import javafx.scene.layout.*?>\n")
+          .append("<?import java.lang.String?>\n")
+          .append("<?import java.net.URL?>\n");
+    }
+
+    private static void row(StringBuilder sb, int i, Shape shape) {
+        sb.append("      <!-- ligne ").append(i).append(" -->\n")
+          .append("      <HBox fx:id=\"row").append(i).append("\" styleClass=\"row\" spacing=\"8\">\n");
+        if (shape.stylesheets) {
+            sb.append("        <stylesheets>\n")
+              .append("          <String>@css/row").append(i % 32).append(".css</String>\n")
+              .append("          <URL value=\"@css/shared.css\"/>\n")
+              .append("        </stylesheets>\n");
+        }
+        sb.append("        <Label fx:id=\"label").append(i).append("\" text=\"Ligne ").append(i)
+          .append(" &amp; suite\" onMouseClicked=\"#onLabel\"/>\n")
+          .append("        <TextField promptText=\"Saisie\" onKeyTyped=\"#onTyped\" onAction='#onEnter'/>\n")
+          .append("        <Button text=\"OK\" defaultButton=\"true\" onAction=\"#onOk").append(i).append("\"/>\n");
+        if (shape.resources) {
+            sb.append("        <ImageView fitWidth=\"16\" fitHeight=\"16\">\n")
+              .append("          <image><Image url=\"@img/icon").append(i % 64).append(".png\"/></image>\n")
+              .append("        </ImageView>\n")
+              .append("        <Hyperlink text=\"Aide\" onAction=\"#onHelp\"><userData><String>@doc/row")
+              .append(i % 16).append(".html</String></userData></Hyperlink>\n");
+        }
+        sb.append("      </HBox>\n");
+    }
+
+    /**
+     * Écrit un arbre d'includes dans dir et retourne le document racine.
+     * Profond: chaîne racine → n1 → … → n{size}. Large: racine incluant {size} feuilles.
+     */
+    static String includeTree(Path dir, boolean deep, int size) throws IOException {
+        Files.createDirectories(dir);
+        if (deep) {
+            for (int i = 1; i <= size; i++) {
+                String next = i < size ? "deep" + (i + 1) + ".fxml" : null;
+                Files.writeString(dir.resolve("deep" + i + ".fxml"), fragment(i, next), StandardCharsets.UTF_8);
+            }
+            return fragment(0, "deep1.fxml");
+        }
+        StringBuilder root = new StringBuilder();
+        header(root);
+        root.append("<VBox xmlns:fx=\"http://javafx.com/fxml/1\" fx:controller=\"com.example.Wide\">\n");
+        for (int i = 1; i <= size; i++) {
+            Files.writeString(dir.resolve("leaf" + i + ".fxml"), fragment(i, null), StandardCharsets.UTF_8);
+            root.append("  <fx:include fx:id=\"leaf").append(i).append("\" source=\"leaf").append(i).append(".fxml\"/>\n");
+        }
+        root.append("</VBox>\n");
+        return root.toString();
+    }
+
+    private static String fragment(int n, String include) {
+        StringBuilder sb = new StringBuilder(1024);
+        header(sb);
+        sb.append("<VBox xmlns:fx=\"http://javafx.com/fxml/1\" fx:controller=\"com.example.Part").append(n).append("\">\n")
+          .append("  <stylesheets><String>@part").append(n).append(".css</String></stylesheets>\n");
+        for (int i = 0; i < 4; i++) {
+            sb.append("  <HBox fx:id=\"r").append(i).append("\"><Label text=\"Fragment ").append(n)
+              .append("\" onMouseClicked=\"#onClick\"/><Button text=\"OK\" onAction=\"#onOk\"/></HBox>\n");
+        }
+        if (include != null) {
+            sb.append("  <fx:include source=\"").append(include).append("\"/>\n");
+        }
+        sb.append("</VBox>\n");
+        return sb.toString();
+    }
+
+    static URL baseUrl(Path dir) throws IOException {
+        return dir.toUri().toURL();
+    }
+}
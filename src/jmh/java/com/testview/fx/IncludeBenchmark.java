@@ -0,0 +1,62 @@
+package com.testview.fx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sanitizeInlineIncludes sur des arbres d'includes écrits sur disque: chaîne profonde
+ * (64 niveaux) et racine large (512 feuilles). « cold » vide FragmentCache avant chaque
+ * appel (lecture + nettoyage de chaque fragment), « warm » mesure l'assemblage seul
+ * avec revalidation des horodatages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncludeBenchmark {
+
+    @Param({"deep", "wide"})
+    public String tree;
+
+    @Param({"warm", "cold"})
+    public String cache;
+
+    private String xml;
+    private URL baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("fxml-includes");
+        boolean deep = "deep".equals(tree);
+        xml = Corpus.includeTree(dir, deep, deep ? 64 : 512);
+        baseUrl = Corpus.baseUrl(dir);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCache() {
+        if ("cold".equals(cache)) FragmentCache.shared().clear();
+    }
+
+    @Benchmark
+    public String sanitizeInlineIncludes() {
+        return FxmlSanitizer.sanitizeInlineIncludes(xml, baseUrl);
+    }
+}
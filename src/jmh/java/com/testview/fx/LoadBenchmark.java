@@ -0,0 +1,63 @@
+package com.testview.fx;
+
+import javafx.scene.Parent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemin complet d'un aperçu: loadSanitized (nettoyage, includes, stylesheets) puis
+ * FXMLLoader.load, sur la plateforme sans affichage (Monocle + Prism logiciel, comme
+ * le mode --batch). Le graphe n'est attaché à aucune scène, comme dans PreviewLoadTask.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoadBenchmark {
+
+    @Param({"small", "medium", "wideIncludes"})
+    public String document;
+
+    private String xml;
+    private URL baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        BatchRenderer.startHeadlessToolkit();
+        Path dir = Files.createTempDirectory("fxml-load");
+        baseUrl = Corpus.baseUrl(dir);
+        xml = switch (document) {
+            case "small" -> Corpus.document(Corpus.Shape.SMALL);
+            case "medium" -> Corpus.document(Corpus.Shape.MEDIUM);
+            default -> Corpus.includeTree(dir, false, 128);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        javafx.application.Platform.exit();
+    }
+
+    @Benchmark
+    public Parent loadSanitized() throws IOException {
+        return Launcher.loadSanitized(xml, baseUrl);
+    }
+}
@@ -0,0 +1,71 @@
+package com.testview.fx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points d'entrée publics de FxmlSanitizer sur des documents générés ({@link Corpus}):
+ * petit, 1 Mo, 20 Mo, riche en stylesheets, riche en attributs @ressource.
+ * Les documents n'ont pas d'include (voir {@link IncludeBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SanitizerBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "STYLESHEETS", "RESOURCES"})
+    public String shape;
+
+    private String xml;
+    private URL baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        xml = Corpus.document(Corpus.Shape.valueOf(shape));
+        baseUrl = Corpus.baseUrl(Files.createTempDirectory("fxml-bench"));
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return FxmlSanitizer.sanitize(xml);
+    }
+
+    @Benchmark
+    public String sanitizeInlineIncludes() {
+        return FxmlSanitizer.sanitizeInlineIncludes(xml, baseUrl);
+    }
+
+    @Benchmark
+    public List<String> extractStylesheetUrls() {
+        return FxmlSanitizer.extractStylesheetUrls(xml);
+    }
+
+    @Benchmark
+    public String stripStylesheets() {
+        return FxmlSanitizer.stripStylesheets(xml);
+    }
+
+    /** Chemin utilisé par l'aperçu: les trois traitements précédents en une passe. */
+    @Benchmark
+    public FxmlSanitizer.Prepared prepare() {
+        return FxmlSanitizer.prepare(xml, baseUrl);
+    }
+}
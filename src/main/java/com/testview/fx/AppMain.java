@@ -6,12 +6,35 @@ import javafx.application.Application;
  * Point d'entrée dédié pour éviter l'erreur
  * "JavaFX runtime components are missing" dans certains contextes d'exécution IDE/JDK.
  *
- * Utilisez cette classe comme Main-Class. Elle délègue à l'application JavaFX réelle (Launcher).
+ * Utilisez cette classe comme Main-Class. Elle délègue à l'application JavaFX réelle (Launcher),
+ * au rendu sans affichage (BatchRenderer) si le premier argument est --batch, ou à
+ * l'entraînement du démarrage (Training) avec --train, à l'aplatissement sans JavaFX
+ * d'une arborescence de FXML (Flattener) avec --flatten, au serveur d'aperçus local
+ * (PreviewServer) avec --serve, ou à son générateur de charge (LoadGenerator) avec --loadgen.
  */
 public final class AppMain {
     private AppMain() {}
 
     public static void main(String[] args) {
+        Startup.mark(Startup.Mark.MAIN);
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            System.exit(BatchRenderer.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "--flatten".equals(args[0])) {
+            System.exit(Flattener.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            System.exit(PreviewServer.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "--loadgen".equals(args[0])) {
+            System.exit(LoadGenerator.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && "--train".equals(args[0])) {
+            System.exit(Training.run(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && Training.WORKLOAD.equals(args[0])) {
+            System.exit(Training.workload(java.util.Arrays.copyOfRange(args, 1, args.length)));
+        }
         Application.launch(Launcher.class, args);
     }
 }
@@ -0,0 +1,318 @@
+package com.testview.fx;
+
+import javafx.fxml.JavaFXBuilderFactory;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundImage;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderImage;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.ImagePattern;
+import javafx.scene.shape.Shape;
+import javafx.util.Builder;
+import javafx.util.BuilderFactory;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Images et feuilles de style partagées par toutes les fenêtres d'aperçu du processus.
+ *
+ * Images: les éléments &lt;Image&gt; des documents passent par {@link #builderFactory()};
+ * une même image (URL canonique, version du fichier, taille demandée, ratio, lissage)
+ * n'est décodée qu'une fois et la même instance est donnée à tous les ImageView qui la citent. Le
+ * décodage se fait en arrière-plan (chargement asynchrone de javafx.scene.image.Image),
+ * sauf pour le rendu par lots dont le snapshot doit voir des images complètes, ou si
+ * le document demande explicitement backgroundLoading="false".
+ * L'éviction est de type LRU, bornée par la taille décodée (largeur × hauteur × 4
+ * octets; propriété système testview.imageCache.maxBytes, 128 Mo par défaut): une
+ * image évincée reste vivante tant qu'un aperçu l'affiche. Une image en erreur
+ * n'est pas gardée. Comme pour les feuilles de style, la version d'un fichier local
+ * (date de modification et taille) fait partie de la clé: une image modifiée est
+ * redécodée au prochain chargement.
+ *
+ * Feuilles de style: StyleManager garde une seule analyse par URL pour toutes les
+ * scènes; {@link #stylesheet(String)} donne à un même fichier une URL unique
+ * (chemin normalisé, versionné par date et taille), de sorte que deux fenêtres sur
+ * les mêmes feuilles partagent la même analyse, et qu'une feuille modifiée soit
+ * relue une seule fois pour toutes les fenêtres.
+ */
+final class AssetCache {
+
+    private static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+    private static final AssetCache SHARED =
+            new AssetCache(Long.getLong("testview.imageCache.maxBytes", DEFAULT_MAX_BYTES));
+
+    /** Paramètres d'une image, tels que déclarés dans le FXML (url canonique), et version du fichier. */
+    private record Key(String url, String version, double width, double height, boolean preserveRatio,
+                       boolean smooth) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, Long> sizes = new HashMap<>();
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private volatile boolean backgroundDecoding = true;
+
+    AssetCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static AssetCache shared() {
+        return SHARED;
+    }
+
+    /** Décodage en arrière-plan des images (désactivé par le rendu par lots). */
+    void setBackgroundDecoding(boolean enabled) {
+        backgroundDecoding = enabled;
+    }
+
+    /**
+     * Fabrique de builders pour FXMLLoader: les &lt;Image&gt; passent par le cache,
+     * tout le reste par la fabrique par défaut.
+     */
+    BuilderFactory builderFactory() {
+        JavaFXBuilderFactory defaults = new JavaFXBuilderFactory();
+        return type -> type == Image.class ? new ImageBuilder() : defaults.getBuilder(type);
+    }
+
+    /**
+     * Image partagée, décodée au premier appel. background: décodage en arrière-plan
+     * demandé par le document, null pour suivre le réglage du cache. Une image voulue
+     * complète dont l'instance partagée est encore en cours de décodage est décodée
+     * sur place et remplace celle-ci dans le cache.
+     */
+    Image image(String url, double width, double height, boolean preserveRatio, boolean smooth, Boolean background) {
+        String canonical = canonical(url);
+        Key key = new Key(canonical, version(localPath(canonical)), width, height, preserveRatio, smooth);
+        boolean async = background != null ? background : backgroundDecoding;
+        synchronized (this) {
+            Image cached = images.get(key);
+            if (cached != null && !cached.isError() && (async || cached.getProgress() >= 1)) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Image image = new Image(key.url(), width, height, preserveRatio, smooth, async);
+        if (image.isError()) return image;
+        synchronized (this) {
+            Image current = images.get(key);
+            boolean usable = current != null && !current.isError() && (async || current.getProgress() >= 1);
+            if (usable) return current;
+            images.put(key, image);
+        }
+        if (image.getProgress() >= 1) {
+            decoded(key, image);
+        } else {
+            // Décodage asynchrone: la taille n'est connue qu'à la fin (notifiée sur le thread JavaFX)
+            image.progressProperty().addListener((obs, was, progress) -> {
+                if (progress.doubleValue() >= 1) decoded(key, image);
+            });
+        }
+        return image;
+    }
+
+    private synchronized void decoded(Key key, Image image) {
+        if (images.get(key) != image) return;
+        if (image.isError()) {
+            images.remove(key);
+            return;
+        }
+        long bytes = 4L * (long) image.getWidth() * (long) image.getHeight();
+        sizes.put(key, bytes);
+        currentBytes += bytes;
+        // L'image la plus récente est toujours gardée, même plus grosse que la borne
+        Iterator<Map.Entry<Key, Image>> it = images.entrySet().iterator();
+        while (currentBytes > maxBytes && images.size() > 1 && it.hasNext()) {
+            Key eldest = it.next().getKey();
+            if (eldest.equals(key)) continue;
+            it.remove();
+            Long size = sizes.remove(eldest);
+            if (size != null) currentBytes -= size;
+            evictions++;
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+
+    synchronized void clear() {
+        images.clear();
+        sizes.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Images affichées par un graphe de nœuds: ImageView, fonds et bordures des Region
+     * (CSS compris, une fois appliquée) et motifs ImagePattern des formes.
+     */
+    static Set<Image> images(Node root) {
+        Set<Image> found = new LinkedHashSet<>();
+        if (root == null) return found;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node instanceof ImageView view && view.getImage() != null) found.add(view.getImage());
+            if (node instanceof Region region) {
+                Background background = region.getBackground();
+                if (background != null) {
+                    for (BackgroundImage image : background.getImages()) found.add(image.getImage());
+                }
+                Border border = region.getBorder();
+                if (border != null) {
+                    for (BorderImage image : border.getImages()) found.add(image.getImage());
+                }
+            }
+            if (node instanceof Shape shape && shape.getFill() instanceof ImagePattern pattern) {
+                found.add(pattern.getImage());
+            }
+            if (node instanceof Parent parent) {
+                for (Node child : parent.getChildrenUnmodifiable()) stack.push(child);
+            }
+        }
+        return found;
+    }
+
+    /** URL canonique des feuilles d'un document, dans l'ordre. */
+    static List<String> stylesheets(List<String> urls) {
+        return urls.stream().map(AssetCache::stylesheet).toList();
+    }
+
+    /**
+     * URL canonique d'une feuille de style: chemin normalisé et, pour un fichier local,
+     * paramètre de version (date de modification et taille) qui force StyleManager à
+     * relire une feuille modifiée. Toute autre URL est seulement normalisée. Un fichier
+     * local garde la forme file:/... de java.net.URL, celle des images que la feuille cite:
+     * StyleManager n'oublie ces images, quand plus aucun nœud n'utilise la feuille, que si
+     * leur URL commence par le dossier de la feuille.
+     */
+    static String stylesheet(String url) {
+        String canonical = canonical(url);
+        String version = version(localPath(canonical));
+        try {
+            if (canonical.startsWith("file:")) canonical = new URL(canonical).toExternalForm();
+        } catch (MalformedURLException e) {
+            // forme canonique telle quelle
+        }
+        return version.isEmpty() ? canonical : canonical + "?v=" + version;
+    }
+
+    /** Version d'un fichier local (date de modification et taille); vide pour une autre URL ou un fichier illisible. */
+    private static String version(Path path) {
+        if (path == null) return "";
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return Long.toString(attrs.lastModifiedTime().toMillis(), 36) + '-' + Long.toString(attrs.size(), 36);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /** Forme unique d'une URL: chemin normalisé, fichiers locaux sous la forme file:///... */
+    static String canonical(String url) {
+        String base = withoutQuery(url);
+        String query = url.substring(base.length());
+        try {
+            URI uri = new URI(base).normalize();
+            if ("file".equalsIgnoreCase(uri.getScheme())) {
+                return Path.of(uri).toAbsolutePath().normalize().toUri() + query;
+            }
+            return uri + query;
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    private static Path localPath(String url) {
+        try {
+            URI uri = new URI(url);
+            return "file".equalsIgnoreCase(uri.getScheme()) && uri.getRawQuery() == null ? Path.of(uri) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static String withoutQuery(String url) {
+        int q = url.indexOf('?');
+        return q < 0 ? url : url.substring(0, q);
+    }
+
+    /**
+     * Builder FXML de javafx.scene.image.Image: collecte les attributs puis demande
+     * l'image au cache. Valeurs par défaut des @NamedArg du constructeur d'Image
+     * (smooth vrai, tailles 0, preserveRatio faux); backgroundLoading absent: réglage
+     * du cache.
+     */
+    private final class ImageBuilder extends AbstractMap<String, Object> implements Builder<Image> {
+
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Object put(String key, Object value) {
+            return values.put(key, value);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return values.entrySet();
+        }
+
+        @Override
+        public Image build() {
+            Object url = values.get("url");
+            if (url == null) throw new IllegalArgumentException("Image sans attribut url");
+            Object background = values.get("backgroundLoading");
+            return image(url.toString(), number("requestedWidth"), number("requestedHeight"),
+                    bool("preserveRatio", false), bool("smooth", true),
+                    background == null ? null : bool("backgroundLoading", false));
+        }
+
+        private double number(String name) {
+            Object value = values.get(name);
+            return value == null ? 0 : value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString().trim());
+        }
+
+        private boolean bool(String name, boolean defaultValue) {
+            Object value = values.get(name);
+            if (value == null) return defaultValue;
+            return value instanceof Boolean b ? b : Boolean.parseBoolean(value.toString().trim());
+        }
+    }
+}
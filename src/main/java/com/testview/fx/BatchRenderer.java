@@ -0,0 +1,392 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Rendu sans affichage d'une arborescence de fichiers FXML en images PNG (mode --batch).
+ *
+ * Conçu pour l'intégration continue: la plateforme Monocle « Headless » et le pipeline
+ * Prism logiciel sont sélectionnés avant le démarrage de JavaFX, aucun écran ni GPU
+ * n'est nécessaire (Monocle doit être sur le classpath, cf. profil Maven headless).
+ *
+ * Pipeline:
+ *  - N threads lisent, nettoient (includes compris) et construisent le graphe de
+ *    nœuds de chaque fichier, puis le déposent dans une file bornée (contre-pression:
+ *    les producteurs attendent si le thread JavaFX prend du retard);
+ *  - l'unique thread JavaFX vide la file par lots: scène, CSS, layout, snapshot;
+ *  - l'encodage PNG et l'écriture repartent sur un pool d'arrière-plan.
+ *
+ * Les échecs (lecture, nettoyage, chargement, rendu, écriture) n'interrompent pas le
+ * lot; ils sont consignés dans un rapport JSON avec les chiffres de débit.
+ *
+ * Utilisation: --batch &lt;dossier&gt; [&lt;sortie&gt;] [--report &lt;fichier.json&gt;] [--threads N] [--queue N]
+ */
+final class BatchRenderer {
+
+    /** Nombre maximal d'écrans rendus par passage sur le thread JavaFX. */
+    private static final int FX_BATCH = 16;
+
+    private record Failure(String file, String stage, String error) {}
+
+    /** Résultat d'un producteur: graphe prêt, document à charger sur le thread JavaFX, ou échec. */
+    private record Job(Path source, String relative, Parent root, FxmlSanitizer.Prepared prepared,
+                       URL baseUrl, LoadMetrics metrics, Failure failure) {}
+
+    private final Path input;
+    private final Path output;
+    private final Path report;
+    private final int threads;
+    private final int queueSize;
+
+    private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicLong prepareNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private long fxNanos;
+
+    private BatchRenderer(Path input, Path output, Path report, int threads, int queueSize) {
+        this.input = input;
+        this.output = output;
+        this.report = report;
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    /** Point d'entrée du mode --batch; retourne le code de sortie du processus. */
+    static int run(String[] args) {
+        Path input = null;
+        Path output = null;
+        Path report = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--report" -> report = Path.of(args[++i]);
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--queue" -> queue = Math.max(1, Integer.parseInt(args[++i]));
+                    default -> {
+                        if (input == null) input = Path.of(args[i]);
+                        else if (output == null) output = Path.of(args[i]);
+                        else throw new IllegalArgumentException("Argument inattendu: " + args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        if (input == null) return usage(null);
+        if (!Files.isDirectory(input)) return usage("Dossier introuvable: " + input);
+        if (output == null) output = Path.of("snapshots");
+        if (report == null) report = output.resolve("report.json");
+        if (queue < 0) queue = 2 * threads;
+
+        BatchRenderer renderer = new BatchRenderer(input.toAbsolutePath().normalize(),
+                output.toAbsolutePath().normalize(), report.toAbsolutePath(), threads, queue);
+        try {
+            return renderer.render();
+        } catch (IOException e) {
+            System.err.println("Erreur: " + e.getMessage());
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 2;
+        }
+    }
+
+    private static int usage(String error) {
+        if (error != null) System.err.println(error);
+        System.err.println("Usage: --batch <dossier> [<sortie>] [--report <fichier.json>] [--threads N] [--queue N]");
+        return 2;
+    }
+
+    /** Sélectionne Monocle + Prism logiciel, sauf si une plateforme a été choisie explicitement. */
+    static void startHeadlessToolkit() throws IOException {
+        if (System.getProperty("glass.platform") == null) {
+            System.setProperty("glass.platform", "Monocle");
+            System.setProperty("monocle.platform", "Headless");
+            System.setProperty("prism.order", "sw");
+        }
+        try {
+            Platform.startup(() -> {});
+        } catch (IllegalStateException alreadyStarted) {
+            // Toolkit déjà démarré (appel depuis une application existante)
+        } catch (RuntimeException | LinkageError e) {
+            throw new IOException("Démarrage de JavaFX sans affichage impossible (Monocle est-il sur le classpath ?"
+                    + " voir le profil Maven headless): " + e, e);
+        }
+        Platform.setImplicitExit(false);
+    }
+
+    private int render() throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(input)) {
+            files = walk.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".fxml"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+        Files.createDirectories(output);
+        startHeadlessToolkit();
+        // Le snapshot suit immédiatement le chargement: images décodées sur place
+        AssetCache.shared().setBackgroundDecoding(false);
+
+        long start = System.nanoTime();
+        BlockingQueue<Job> queue = new ArrayBlockingQueue<>(queueSize);
+        ExecutorService producers = Executors.newFixedThreadPool(threads, daemon("fxml-batch-"));
+        // File d'encodage bornée: si elle déborde, le thread JavaFX encode lui-même
+        ThreadPoolExecutor encoders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads), daemon("fxml-png-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (Path file : files) {
+                producers.execute(() -> {
+                    Job job;
+                    try {
+                        job = prepare(file);
+                    } catch (Throwable e) {
+                        // Mémoire, pile...: le fichier est compté en échec, la boucle de rendu n'attend pas
+                        String relative = input.relativize(file).toString().replace('\\', '/');
+                        job = new Job(file, relative, null, null, null, null, new Failure(relative, "prepare", describe(e)));
+                    }
+                    enqueue(queue, job);
+                });
+            }
+            List<Job> batch = new ArrayList<>(FX_BATCH);
+            for (int received = 0; received < files.size(); received += batch.size()) {
+                batch.clear();
+                batch.add(queue.take());
+                queue.drainTo(batch, FX_BATCH - 1);
+                List<Job> ready = new ArrayList<>(batch.size());
+                for (Job job : batch) {
+                    if (job.failure() != null) failures.add(job.failure());
+                    else ready.add(job);
+                }
+                if (ready.isEmpty()) continue;
+                try {
+                    PreviewLoadTask.onFxThread(() -> {
+                        long t0 = System.nanoTime();
+                        for (Job job : ready) snapshot(job, encoders);
+                        fxNanos += System.nanoTime() - t0;
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Thread JavaFX indisponible: " + e, e);
+                }
+            }
+        } finally {
+            producers.shutdownNow();
+            encoders.shutdown();
+            encoders.awaitTermination(1, TimeUnit.HOURS);
+            Platform.exit();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        writeReport(files.size(), elapsed);
+        double seconds = elapsed / 1e9;
+        System.out.printf(Locale.ROOT, "%d/%d écrans rendus en %.1f s (%.1f écrans/s), %d échec(s) — rapport: %s%n",
+                written.get(), files.size(), seconds, written.get() / Math.max(seconds, 1e-9),
+                failures.size(), report);
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Chaque fichier produit exactement un Job: la boucle de rendu en attend un par
+     * fichier. Une interruption ne l'abandonne pas, elle est rétablie après le dépôt.
+     */
+    private static void enqueue(BlockingQueue<Job> queue, Job job) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(job);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /** Lecture, nettoyage et construction du graphe (thread producteur). */
+    private Job prepare(Path file) {
+        String relative = input.relativize(file).toString().replace('\\', '/');
+        long t0 = System.nanoTime();
+        String stage = "read";
+        LoadMetrics metrics = new LoadMetrics(relative);
+        try {
+            URL baseUrl = Launcher.toBaseUrl(file.toFile());
+            if (SanitizingInputStream.appliesTo(Files.size(file))) {
+                return streamed(file, relative, baseUrl, metrics);
+            }
+            String xml = PreviewLoadTask.read(file, metrics);
+            stage = "prepare";
+            FxmlSanitizer.Prepared prepared = FxmlSanitizer.prepare(xml, baseUrl, file.toUri().toURL(), metrics);
+            stage = "load";
+            Parent root;
+            try {
+                root = Launcher.loadPrepared(prepared, baseUrl, metrics);
+            } catch (IOException | RuntimeException e) {
+                if (!PreviewLoadTask.requiresFxThread(e)) throw e;
+                // Élément exigeant le thread JavaFX: chargé au moment du rendu
+                return new Job(file, relative, null, prepared, baseUrl, metrics, null);
+            }
+            if (root == null) throw new IOException("Document vide");
+            return new Job(file, relative, root, null, null, metrics, null);
+        } catch (Exception | LinkageError e) {
+            return new Job(file, relative, null, null, null, metrics, new Failure(relative, stage, describe(e)));
+        } finally {
+            prepareNanos.addAndGet(System.nanoTime() - t0);
+        }
+    }
+
+    /** Gros fichiers: lecture, nettoyage et construction en flux (voir SanitizingInputStream). */
+    private Job streamed(Path file, String relative, URL baseUrl, LoadMetrics metrics) throws IOException {
+        SanitizingInputStream in = SanitizingInputStream.open(file, baseUrl, file.toUri().toURL(), metrics);
+        Parent root;
+        try {
+            root = Launcher.loadStreaming(in, baseUrl, metrics);
+        } catch (IOException | RuntimeException e) {
+            if (!PreviewLoadTask.requiresFxThread(e)) throw e;
+            // Rejoué en flux sur le thread JavaFX (ni graphe ni document préparé)
+            return new Job(file, relative, null, null, baseUrl, metrics, null);
+        }
+        if (root == null) throw new IOException("Document vide");
+        return new Job(file, relative, root, null, null, metrics, null);
+    }
+
+    /** Scène, CSS, layout et snapshot (thread JavaFX); l'encodage part en arrière-plan. */
+    private void snapshot(Job job, ExecutorService encoders) {
+        String stage = "load";
+        try {
+            Parent root;
+            if (job.root() != null) {
+                root = job.root();
+            } else if (job.prepared() != null) {
+                root = Launcher.loadPrepared(job.prepared(), job.baseUrl(), job.metrics());
+            } else {
+                root = Launcher.loadStreaming(SanitizingInputStream.open(job.source(), job.baseUrl(),
+                        job.source().toUri().toURL(), job.metrics()), job.baseUrl(), job.metrics());
+            }
+            stage = "render";
+            // Premier rendu: CSS + layout + snapshot, l'équivalent du premier pulse d'une fenêtre
+            LoadEvents.FirstPulse event = new LoadEvents.FirstPulse();
+            event.begin();
+            long start = System.nanoTime();
+            new Scene(root);
+            WritableImage image = root.snapshot(null, null);
+            job.metrics().stage(LoadMetrics.Stage.FIRST_PULSE, System.nanoTime() - start);
+            event.document = job.relative();
+            event.commit();
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
+            if (width <= 0 || height <= 0) throw new IllegalStateException("Rendu vide (" + width + "x" + height + ")");
+            int[] argb = new int[width * height];
+            image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+            encoders.execute(() -> encode(job.relative(), argb, width, height));
+        } catch (Exception | LinkageError e) {
+            failures.add(new Failure(job.relative(), stage, describe(e)));
+        }
+    }
+
+    private void encode(String relative, int[] argb, int width, int height) {
+        long t0 = System.nanoTime();
+        Path target = output.resolve(relative.substring(0, relative.length() - ".fxml".length()) + ".png");
+        try {
+            Files.createDirectories(target.getParent());
+            // Fichier temporaire + renommage: pas de PNG tronqué si le lot est interrompu
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                PngWriter.write(argb, width, height, out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            written.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failures.add(new Failure(relative, "write", describe(e)));
+        } finally {
+            encodeNanos.addAndGet(System.nanoTime() - t0);
+        }
+    }
+
+    private void writeReport(int total, long elapsedNanos) throws IOException {
+        List<Failure> sorted = new ArrayList<>(failures);
+        sorted.sort(Comparator.comparing(Failure::file));
+        double seconds = elapsedNanos / 1e9;
+
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("input").value(input.toString())
+                .name("output").value(output.toString())
+                .name("threads").value(threads)
+                .name("total").value(total)
+                .name("rendered").value(written.get())
+                .name("failed").value(sorted.size())
+                .name("elapsedMs").value(elapsedNanos / 1_000_000)
+                .name("screensPerSecond").value(written.get() / Math.max(seconds, 1e-9))
+                // Temps cumulés par étape (sur tous les threads) pour repérer le goulot
+                .name("prepareMs").value(prepareNanos.get() / 1_000_000)
+                .name("fxThreadMs").value(fxNanos / 1_000_000)
+                .name("encodeMs").value(encodeNanos.get() / 1_000_000)
+                .name("stages");
+        MetricsRegistry.shared().writeStats(json);
+        json.name("failures").beginArray();
+        for (Failure f : sorted) {
+            json.beginObject()
+                    .name("file").value(f.file())
+                    .name("stage").value(f.stage())
+                    .name("error").value(f.error())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        sb.append('\n');
+
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        Files.writeString(report, sb, StandardCharsets.UTF_8);
+    }
+
+    static String describe(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        String msg = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (root != e) msg += " (cause: " + root.getClass().getSimpleName() + ": " + root.getMessage() + ")";
+        return msg;
+    }
+
+    static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.testview.fx;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Vue CharSequence, sans copie, d'octets UTF-8 (typiquement un fichier mappé en mémoire):
+ * chaque octet est présenté comme le caractère 0-255 de même valeur.
+ *
+ * Les délimiteurs XML étant tous ASCII, et les octets d'une séquence multi-octets
+ * UTF-8 étant tous ≥ 0x80, {@link FxmlTokenizer} découpe cette vue exactement comme
+ * le texte décodé. Recopier des caractères de la vue dans un StringBuilder revient
+ * à recopier les octets d'origine (le StringBuilder reste en Latin-1: un octet par
+ * caractère).
+ */
+final class ByteChars implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    ByteChars(ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private ByteChars(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new ByteChars(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(offset, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Décode en UTF-8 la portion [start, end) d'une vue d'octets. */
+    static String decode(CharSequence latin1, int start, int end) {
+        byte[] b = new byte[end - start];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) latin1.charAt(start + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Ajoute text à out sous forme d'octets UTF-8 (un caractère 0-255 par octet). */
+    static void appendUtf8(CharSequence text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.append(c);
+                continue;
+            }
+            int cp = c;
+            if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                cp = Character.toCodePoint(c, text.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                out.append('?'); // surrogate isolé: non encodable
+                continue;
+            }
+            if (cp < 0x800) {
+                out.append((char) (0xC0 | (cp >> 6)));
+            } else if (cp < 0x10000) {
+                out.append((char) (0xE0 | (cp >> 12)));
+                out.append((char) (0x80 | ((cp >> 6) & 0x3F)));
+            } else {
+                out.append((char) (0xF0 | (cp >> 18)));
+                out.append((char) (0x80 | ((cp >> 12) & 0x3F)));
+                out.append((char) (0x80 | ((cp >> 6) & 0x3F)));
+            }
+            out.append((char) (0x80 | (cp & 0x3F)));
+        }
+    }
+}
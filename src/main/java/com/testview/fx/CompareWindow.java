@@ -0,0 +1,345 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.control.ToolBar;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Comparaison de deux variantes d'un écran: les deux documents passent par le même
+ * chargement que les aperçus ({@link PreviewLoadTask}), sont rendus à la même taille
+ * (la plus grande des deux), puis comparés pixel à pixel ({@link PixelDiff}).
+ *
+ * Les images des documents étant décodées en arrière-plan ({@link AssetCache}), le
+ * rendu attend que toutes celles des deux graphes (CSS appliquée) soient complètes
+ * ou en erreur: une image encore vide compterait sinon comme un écart.
+ *
+ * La fenêtre montre l'une ou l'autre variante, la carte des écarts en surimpression
+ * et le cadre des zones modifiées. Les deux fichiers, leurs includes, leurs
+ * feuilles de style et leurs images sont surveillés: chaque modification relance
+ * chargement, rendu et comparaison (seul le dernier résultat est affiché).
+ *
+ * Toutes les méthodes s'exécutent sur le thread JavaFX, sauf indication contraire.
+ */
+final class CompareWindow {
+
+    /** Écart (0 à 255) en deçà duquel deux pixels sont considérés égaux. */
+    static final int THRESHOLD = Integer.getInteger("testview.compare.threshold", 0);
+
+    /** Rendus des deux variantes, à la même taille, en ARGB non prémultiplié. */
+    record Snapshots(int width, int height, int[] left, int[] right) {}
+
+    private final Path left;
+    private final Path right;
+    private final Stage stage;
+    private final Executor executor;
+    private final Consumer<String> status;
+
+    private final ImageView base = new ImageView();
+    private final ImageView heat = new ImageView();
+    private final Pane boxes = new Pane();
+    private final ToggleButton showLeft = new ToggleButton("A");
+    private final ToggleButton showRight = new ToggleButton("B");
+    private final Label info = new Label();
+    private WritableImage leftImage;
+    private WritableImage rightImage;
+    private FileWatcher.Subscription subscription;
+    // Seul le résultat du dernier rafraîchissement est affiché
+    private long generation;
+    // Chargements du rafraîchissement en cours (null une fois terminés)
+    private PreviewLoadTask[] loading;
+
+    CompareWindow(Stage owner, Path left, Path right, Executor executor, Consumer<String> status) {
+        this.left = left;
+        this.right = right;
+        this.executor = executor;
+        this.status = status;
+
+        ToggleGroup group = new ToggleGroup();
+        showLeft.setToggleGroup(group);
+        showRight.setToggleGroup(group);
+        showRight.setSelected(true);
+        group.selectedToggleProperty().addListener((obs, was, now) -> {
+            if (now == null) was.setSelected(true);
+            else base.setImage(now == showLeft ? leftImage : rightImage);
+        });
+        CheckBox heatToggle = new CheckBox("Écarts");
+        heatToggle.setSelected(true);
+        heat.visibleProperty().bind(heatToggle.selectedProperty());
+        CheckBox boxesToggle = new CheckBox("Zones");
+        boxesToggle.setSelected(true);
+        boxes.visibleProperty().bind(boxesToggle.selectedProperty());
+        boxes.setMouseTransparent(true);
+
+        StackPane layers = new StackPane(base, heat, boxes);
+        layers.setAlignment(Pos.TOP_LEFT);
+        BorderPane content = new BorderPane(new ScrollPane(new Group(layers)));
+        content.setTop(new ToolBar(showLeft, showRight, heatToggle, boxesToggle, new Label("  "), info));
+
+        stage = new Stage();
+        stage.initOwner(owner);
+        stage.setTitle("Comparaison - " + left.getFileName() + " (A) ↔ " + right.getFileName() + " (B)");
+        stage.setScene(new Scene(content, 1024, 768));
+        stage.setOnHidden(e -> {
+            if (subscription != null) subscription.close();
+            subscription = null;
+            generation++;
+            cancelLoading();
+        });
+    }
+
+    Stage stage() {
+        return stage;
+    }
+
+    void show() {
+        stage.show();
+        refresh(System.nanoTime());
+    }
+
+    /**
+     * Charge les deux variantes en arrière-plan, puis rendu et comparaison. Les deux
+     * chargements sont soumis séparément et joints sans bloquer de thread du pool
+     * (partagé avec les aperçus); ceux d'un rafraîchissement précédent sont annulés.
+     */
+    private void refresh(long start) {
+        long current = ++generation;
+        cancelLoading();
+        info.setText("Chargement…");
+        PreviewLoadTask a = new PreviewLoadTask(left, false);
+        PreviewLoadTask b = new PreviewLoadTask(right, false);
+        loading = new PreviewLoadTask[] {a, b};
+        load(a).thenCombine(load(b), (la, lb) -> new PreviewLoadTask.Loaded[] {la, lb})
+                .whenComplete((loaded, ex) -> Platform.runLater(() -> {
+                    if (current != generation) return;
+                    loading = null;
+                    if (ex != null) failed(ex instanceof CompletionException && ex.getCause() != null
+                            ? ex.getCause() : ex);
+                    else loaded(loaded, current, start);
+                }));
+    }
+
+    /** Exécute task sur le pool; le résultat est lu une fois la tâche terminée, sans attente. */
+    private CompletableFuture<PreviewLoadTask.Loaded> load(PreviewLoadTask task) {
+        return CompletableFuture.runAsync(task, executor).thenApply(done -> {
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private void cancelLoading() {
+        if (loading == null) return;
+        for (PreviewLoadTask task : loading) task.cancel(true);
+        loading = null;
+    }
+
+    /** Deux variantes chargées: CSS, surveillance, attente des images, puis rendu et comparaison. */
+    private void loaded(PreviewLoadTask.Loaded[] loaded, long current, long start) {
+        Set<Image> images;
+        try {
+            images = styled(loaded[0].root(), loaded[1].root());
+        } catch (RuntimeException ex) {
+            failed(ex);
+            return;
+        }
+        watch(loaded, images);
+        whenDecoded(images, () -> {
+            if (current != generation) return;
+            Snapshots snapshots;
+            try {
+                snapshots = snapshot(loaded[0].root(), loaded[1].root());
+            } catch (RuntimeException ex) {
+                failed(ex);
+                return;
+            }
+            CompletableFuture
+                    .supplyAsync(() -> PixelDiff.diff(snapshots.left(), snapshots.right(),
+                            snapshots.width(), snapshots.height(), THRESHOLD, true), executor)
+                    .whenComplete((result, ex) -> Platform.runLater(() -> {
+                        if (current != generation) return;
+                        if (ex != null) failed(ex);
+                        else display(snapshots, result, start);
+                    }));
+        });
+    }
+
+    /** Attache chaque racine à une scène et lui applique la CSS; images affichées par les deux graphes. */
+    private static Set<Image> styled(Parent... roots) {
+        Set<Image> images = new LinkedHashSet<>();
+        for (Parent root : roots) {
+            if (root.getScene() == null) new Scene(root);
+            root.applyCss();
+            images.addAll(AssetCache.images(root));
+        }
+        return images;
+    }
+
+    /** Exécute action (thread JavaFX) quand toutes les images sont décodées ou en erreur. */
+    private static void whenDecoded(Set<Image> images, Runnable action) {
+        List<Image> pending = images.stream().filter(i -> i.getProgress() < 1 && !i.isError()).toList();
+        if (pending.isEmpty()) {
+            action.run();
+            return;
+        }
+        int[] remaining = {pending.size()};
+        for (Image image : pending) {
+            // Progression et erreur sont notifiées sur le thread JavaFX: pas de course avec le filtre ci-dessus
+            InvalidationListener listener = new InvalidationListener() {
+                @Override
+                public void invalidated(Observable obs) {
+                    if (image.getProgress() < 1 && !image.isError()) return;
+                    image.progressProperty().removeListener(this);
+                    image.errorProperty().removeListener(this);
+                    if (--remaining[0] == 0) action.run();
+                }
+            };
+            image.progressProperty().addListener(listener);
+            image.errorProperty().addListener(listener);
+        }
+    }
+
+    /**
+     * Rend les deux racines (thread JavaFX) à la même taille: la plus grande des deux
+     * tailles préférées. Une zone qu'une seule variante couvre reste transparente
+     * dans l'autre, et compte donc comme modifiée. Les racines sont ensuite détachées
+     * de leur scène: StyleManager oublie leurs feuilles et les images qu'elles citent,
+     * relues au prochain rafraîchissement.
+     */
+    static Snapshots snapshot(Parent left, Parent right) {
+        try {
+            if (left.getScene() == null) new Scene(left);
+            if (right.getScene() == null) new Scene(right);
+            WritableImage a = left.snapshot(null, null);
+            WritableImage b = right.snapshot(null, null);
+            int width = (int) Math.max(a.getWidth(), b.getWidth());
+            int height = (int) Math.max(a.getHeight(), b.getHeight());
+            if (a.getWidth() != width || a.getHeight() != height) a = resized(left, width, height);
+            if (b.getWidth() != width || b.getHeight() != height) b = resized(right, width, height);
+            return new Snapshots(width, height, pixels(a, width, height), pixels(b, width, height));
+        } finally {
+            if (left.getScene() != null) left.getScene().setRoot(new Group());
+            if (right.getScene() != null) right.getScene().setRoot(new Group());
+        }
+    }
+
+    private static WritableImage resized(Parent root, int width, int height) {
+        root.resize(width, height);
+        root.layout();
+        return root.snapshot(null, null);
+    }
+
+    /** Pixels de l'image sur width × height (le reste, s'il y en a, à zéro). */
+    private static int[] pixels(WritableImage image, int width, int height) {
+        int[] argb = new int[width * height];
+        int w = Math.min(width, (int) image.getWidth());
+        int h = Math.min(height, (int) image.getHeight());
+        image.getPixelReader().getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        return argb;
+    }
+
+    private void display(Snapshots snapshots, PixelDiff.Result result, long start) {
+        int width = snapshots.width();
+        int height = snapshots.height();
+        leftImage = image(snapshots.left(), width, height);
+        rightImage = image(snapshots.right(), width, height);
+        base.setImage(showLeft.isSelected() ? leftImage : rightImage);
+        heat.setImage(image(result.heatmap(), width, height));
+        boxes.getChildren().clear();
+        for (PixelDiff.Box box : result.boxes()) {
+            Rectangle r = new Rectangle(box.x() - 2, box.y() - 2, box.width() + 4, box.height() + 4);
+            r.setFill(null);
+            r.setStroke(Color.web("#ff2020"));
+            r.setStrokeWidth(2);
+            boxes.getChildren().add(r);
+        }
+        String summary = result.changedPixels() == 0
+                ? "Identiques"
+                : String.format("%,d px modifiés (%.2f %%) · %d zone%s", result.changedPixels(),
+                        100 * result.changedRatio(), result.boxes().size(), result.boxes().size() > 1 ? "s" : "");
+        info.setText(summary + " · " + width + "×" + height + " · diff " + result.nanos() / 1_000_000 + " ms");
+        status.accept("Comparaison " + left.getFileName() + " ↔ " + right.getFileName() + ": " + summary
+                + " en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static WritableImage image(int[] argb, int width, int height) {
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        return image;
+    }
+
+    private void failed(Throwable ex) {
+        info.setText("Comparaison impossible: " + ex.getMessage());
+        status.accept("Comparaison impossible (" + left.getFileName() + " ↔ " + right.getFileName() + "): "
+                + ex.getMessage());
+    }
+
+    /** Surveille les deux documents et leurs dépendances; toute modification relance la comparaison. */
+    private void watch(PreviewLoadTask.Loaded[] loaded, Set<Image> images) {
+        if (!stage.isShowing()) return;
+        Set<Path> files = new LinkedHashSet<>();
+        files.add(left);
+        files.add(right);
+        for (PreviewLoadTask.Loaded l : loaded) {
+            for (URL url : l.includes()) {
+                Path p = PreviewWindow.toPath(url.toString());
+                if (p != null) files.add(p);
+            }
+            for (String css : l.stylesheets()) {
+                Path p = PreviewWindow.toPath(css);
+                if (p != null) files.add(p);
+            }
+        }
+        for (Image image : images) {
+            Path p = image.getUrl() != null ? PreviewWindow.toPath(image.getUrl()) : null;
+            if (p != null) files.add(p);
+        }
+        if (subscription != null) subscription.close();
+        try {
+            subscription = FileWatcher.shared().watch(files, changed -> {
+                long start = System.nanoTime();
+                Platform.runLater(() -> {
+                    if (stage.isShowing()) refresh(start);
+                });
+            });
+        } catch (IOException e) {
+            status.accept("Surveillance impossible: " + e.getMessage());
+        }
+    }
+}
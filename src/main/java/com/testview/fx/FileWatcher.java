@@ -0,0 +1,178 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Surveillance de fichiers partagée par toutes les fenêtres d'aperçu.
+ *
+ * Un seul WatchService et un seul thread pour tout le processus; on surveille les
+ * dossiers parents (les éditeurs enregistrent souvent par renommage atomique, ce qui
+ * remplace le fichier surveillé). Les événements sont regroupés par abonnement:
+ * l'écouteur reçoit l'ensemble des fichiers modifiés une fois qu'aucun nouvel
+ * événement n'est arrivé pendant {@link #DEBOUNCE_MS} ms.
+ */
+final class FileWatcher {
+
+    static final long DEBOUNCE_MS = Long.getLong("testview.watch.debounceMs", 30);
+
+    private static FileWatcher shared;
+
+    /** Abonnement actif; close() arrête la surveillance des fichiers concernés. */
+    final class Subscription implements AutoCloseable {
+        private final Set<Path> files;
+        private final Consumer<Set<Path>> listener;
+        private final Set<Path> pending = new LinkedHashSet<>();
+        private ScheduledFuture<?> flush;
+
+        private Subscription(Set<Path> files, Consumer<Set<Path>> listener) {
+            this.files = files;
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+
+    private final WatchService service;
+    private final ScheduledExecutorService debouncer;
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<Path, Integer> dirRefs = new HashMap<>();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private FileWatcher() throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.debouncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fxml-watch-debounce");
+            t.setDaemon(true);
+            return t;
+        });
+        Thread poller = new Thread(this::poll, "fxml-watch");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    static synchronized FileWatcher shared() throws IOException {
+        if (shared == null) shared = new FileWatcher();
+        return shared;
+    }
+
+    /**
+     * Surveille les fichiers donnés; listener est appelé sur un thread d'arrière-plan.
+     * Si un dossier ne peut pas être surveillé (supprimé entre-temps...), les dossiers
+     * enregistrés par cet appel sont libérés avant que l'exception ne remonte.
+     */
+    synchronized Subscription watch(Collection<Path> files, Consumer<Set<Path>> listener) throws IOException {
+        Set<Path> normalized = new LinkedHashSet<>();
+        for (Path f : files) normalized.add(f.toAbsolutePath().normalize());
+        Subscription sub = new Subscription(normalized, listener);
+        Set<Path> dirs = directories(normalized);
+        Map<Path, WatchKey> registered = new HashMap<>();
+        try {
+            for (Path dir : dirs) {
+                if (!keys.containsKey(dir)) {
+                    registered.put(dir, dir.register(service,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.ENTRY_DELETE));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (WatchKey key : registered.values()) key.cancel();
+            throw e;
+        }
+        keys.putAll(registered);
+        for (Path dir : dirs) dirRefs.merge(dir, 1, Integer::sum);
+        subscriptions.add(sub);
+        return sub;
+    }
+
+    private synchronized void unsubscribe(Subscription sub) {
+        if (!subscriptions.remove(sub)) return;
+        if (sub.flush != null) sub.flush.cancel(false);
+        for (Path dir : directories(sub.files)) {
+            if (dirRefs.merge(dir, -1, Integer::sum) <= 0) {
+                dirRefs.remove(dir);
+                WatchKey key = keys.remove(dir);
+                if (key != null) key.cancel();
+            }
+        }
+    }
+
+    private static Set<Path> directories(Set<Path> files) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (Path f : files) {
+            if (f.getParent() != null) dirs.add(f.getParent());
+        }
+        return dirs;
+    }
+
+    private void poll() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            Set<Path> changed = new LinkedHashSet<>();
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else {
+                    changed.add(dir.resolve((Path) event.context()));
+                }
+            }
+            key.reset();
+            dispatch(dir, changed, overflow);
+        }
+    }
+
+    private synchronized void dispatch(Path dir, Set<Path> changed, boolean overflow) {
+        for (Subscription sub : subscriptions) {
+            boolean hit = false;
+            for (Path f : sub.files) {
+                if (overflow ? dir.equals(f.getParent()) : changed.contains(f)) {
+                    sub.pending.add(f);
+                    hit = true;
+                }
+            }
+            if (!hit) continue;
+            if (sub.flush != null) sub.flush.cancel(false);
+            sub.flush = debouncer.schedule(() -> flush(sub), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(Subscription sub) {
+        Set<Path> batch;
+        synchronized (this) {
+            if (!subscriptions.contains(sub) || sub.pending.isEmpty()) return;
+            batch = new LinkedHashSet<>(sub.pending);
+            sub.pending.clear();
+            sub.flush = null;
+        }
+        sub.listener.accept(batch);
+    }
+}
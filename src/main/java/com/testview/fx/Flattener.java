@@ -0,0 +1,491 @@
+package com.testview.fx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Mode --flatten: aplatissement sans JavaFX d'une arborescence de FXML, pour d'autres outils.
+ *
+ * Chaque fichier .fxml du dossier source est préparé comme pour un aperçu
+ * ({@link FxmlSanitizer#prepare}: nettoyage, includes inlinés, blocs stylesheets
+ * retirés) et écrit sous le même chemin relatif dans le dossier de sortie, avec un
+ * manifeste &lt;nom&gt;.fxml.json (document source, feuilles de style, includes).
+ * Les fichiers sont traités en parallèle, un par tâche; les fragments inclus
+ * communs ne sont nettoyés qu'une fois ({@link FragmentCache}).
+ *
+ * Incrémental: l'index .flatten-index du dossier de sortie garde, pour chaque
+ * document, l'empreinte de son contenu et la liste de ses includes (fermeture
+ * transitive, includes introuvables compris), et pour chaque fichier cité sa taille,
+ * sa date et son empreinte. Un document est ignoré si ni lui ni aucun de ses includes
+ * n'a changé et si ses sorties existent; une date modifiée sans changement de
+ * contenu ne coûte qu'une relecture. Les empreintes indexées sont celles des
+ * contenus effectivement lus; une date trop récente au moment de la lecture (dans
+ * la résolution de l'horloge) n'est pas indexée, le passage suivant comparera alors
+ * les empreintes. Les sorties d'un document source supprimé sont supprimées.
+ *
+ * N'utilise aucune classe JavaFX: fonctionne sans les modules javafx.*.
+ */
+final class Flattener {
+
+    private static final int FORMAT = 1;
+    private static final int MAGIC = 0x5456_4649; // "TVFI"
+    static final String INDEX = ".flatten-index";
+    static final String MANIFEST_SUFFIX = ".json";
+
+    /**
+     * Taille, date de modification (ms) et SHA-256 d'un fichier; size -1: introuvable;
+     * modified -1: date non fiable, seule l'empreinte compte.
+     */
+    record Stamp(long size, long modified, byte[] hash) {
+        boolean sameFile(Stamp other) {
+            return other != null && size == other.size && modified == other.modified;
+        }
+
+        boolean sameContent(Stamp other) {
+            return other != null && size == other.size && Arrays.equals(hash, other.hash);
+        }
+    }
+
+    private static final long UNSETTLED = -1;
+    /** Include lu avec des contenus différents par deux documents: considéré comme modifié. */
+    private static final Stamp INCONSISTENT = new Stamp(-2, UNSETTLED, null);
+
+    /** Entrée d'index d'un document: empreinte de la source et URLs de ses includes. */
+    record Doc(Stamp source, List<String> includes) {}
+
+    private final Path source;
+    private final Path output;
+    private final int threads;
+    private final boolean force;
+
+    // Index du dernier passage, puis du passage courant
+    private final Map<String, Doc> previousDocs = new HashMap<>();
+    private final Map<String, Stamp> previousFiles = new HashMap<>();
+    private final Map<String, Doc> docs = new ConcurrentHashMap<>();
+    private final Map<String, Stamp> files = new ConcurrentHashMap<>();
+    // Fichiers cités déjà vérifiés lors de ce passage: URL -> inchangé
+    private final Map<String, Boolean> checked = new ConcurrentHashMap<>();
+
+    private final AtomicInteger flattened = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    Flattener(Path source, Path output, int threads, boolean force) {
+        this.source = source;
+        this.output = output;
+        this.threads = threads;
+        this.force = force;
+    }
+
+    /** Point d'entrée de --flatten; retourne le code de sortie du processus. */
+    static int run(String[] args) {
+        Path source = null;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean force = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--force" -> force = true;
+                    default -> {
+                        if (source == null) source = Path.of(args[i]);
+                        else if (output == null) output = Path.of(args[i]);
+                        else throw new IllegalArgumentException("Argument inattendu: " + args[i]);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        if (source == null || output == null) return usage(null);
+        if (!Files.isDirectory(source)) return usage("Dossier introuvable: " + source);
+        source = source.toAbsolutePath().normalize();
+        output = output.toAbsolutePath().normalize();
+        if (output.startsWith(source)) {
+            return usage("Le dossier de sortie doit être hors du dossier source: " + output);
+        }
+        try {
+            return new Flattener(source, output, threads, force).flatten();
+        } catch (IOException e) {
+            System.err.println("Erreur: " + e.getMessage());
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 2;
+        }
+    }
+
+    private static int usage(String error) {
+        if (error != null) System.err.println(error);
+        System.err.println("Usage: --flatten <source> <sortie> [--threads N] [--force]");
+        return 2;
+    }
+
+    private int flatten() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Path> documents;
+        try (Stream<Path> walk = Files.walk(source)) {
+            documents = walk.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".fxml"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+        Files.createDirectories(output);
+        if (!force) readIndex();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fxml-flatten");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> tasks = new ArrayList<>(documents.size());
+            for (Path document : documents) tasks.add(pool.submit(() -> process(document)));
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    // process() consigne ses propres erreurs: seule une erreur inattendue arrive ici
+                    failures.put(String.valueOf(e.getCause()), describe(e.getCause()));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int removed = removeStale();
+        writeIndex();
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d fichiers: %d aplatis, %d inchangés, %d supprimés, %d erreurs en %d ms (%d threads)%n",
+                documents.size(), flattened.get(), skipped.get(), removed, failures.size(), ms, threads);
+        new TreeMap<>(failures).forEach((file, error) -> System.err.println("  " + file + ": " + error));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private void process(Path document) {
+        String relative = source.relativize(document).toString().replace('\\', '/');
+        Path target = output.resolve(relative);
+        Path manifest = target.resolveSibling(target.getFileName() + MANIFEST_SUFFIX);
+        try {
+            long checkedAt = System.currentTimeMillis();
+            Stamp stamp = stat(document);
+            Doc previous = previousDocs.get(relative);
+            if (previous != null && unchanged(document, stamp, previous) && Files.exists(target) && Files.exists(manifest)) {
+                docs.put(relative, new Doc(files.getOrDefault(key(document), previous.source()), previous.includes()));
+                skipped.incrementAndGet();
+                return;
+            }
+
+            byte[] bytes = Files.readAllBytes(document);
+            Stamp read = indexed(stamp, bytes.length, FragmentCache.sha256(bytes), checkedAt);
+            files.put(key(document), read);
+            URL documentUrl = document.toUri().toURL();
+            // Même base que Launcher.toBaseUrl, sans charger de classe JavaFX
+            URL baseUrl = document.getParent().toUri().toURL();
+            long prepareStart = System.currentTimeMillis();
+            FxmlSanitizer.Prepared prepared = FxmlSanitizer.prepare(new String(bytes, StandardCharsets.UTF_8),
+                    baseUrl, documentUrl);
+
+            write(target, prepared.fxml().getBytes(StandardCharsets.UTF_8));
+            write(manifest, manifest(relative, prepared).getBytes(StandardCharsets.UTF_8));
+
+            List<String> includes = new ArrayList<>(prepared.includes().size());
+            for (URL include : prepared.includes()) {
+                String key = include.toExternalForm();
+                includes.add(key);
+                record(key, includeStamp(include, prepared.includeHashes().get(key), prepareStart));
+            }
+            docs.put(relative, new Doc(read, includes));
+            flattened.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failures.put(relative, describe(e));
+        }
+    }
+
+    /** Le document et chacun de ses includes sont-ils inchangés depuis le dernier passage ? */
+    private boolean unchanged(Path document, Stamp stamp, Doc previous) {
+        if (!sameAsBefore(key(document), stamp)) return false;
+        for (String include : previous.includes()) {
+            if (!checked.computeIfAbsent(include, this::includeUnchanged)) return false;
+        }
+        return true;
+    }
+
+    private boolean includeUnchanged(String url) {
+        try {
+            return sameAsBefore(url, stamp(new URL(url)));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compare au dernier passage: pour un fichier local, même taille et même date
+     * suffisent; sinon on compare les empreintes (un fichier touché sans être modifié
+     * reste inchangé). Garde l'empreinte courante pour le prochain index.
+     */
+    private boolean sameAsBefore(String key, Stamp stamp) {
+        Stamp before = previousFiles.get(key);
+        if (before == null) return false;
+        if (stamp.hash() == null) {
+            if (stamp.sameFile(before)) {
+                record(key, before);
+                return true;
+            }
+            stamp = withHash(key, stamp);
+        }
+        record(key, stamp);
+        return stamp.sameContent(before);
+    }
+
+    /**
+     * Indexe l'empreinte d'un fichier cité. Deux documents peuvent l'avoir lu à des
+     * moments différents: s'ils ne l'ont pas vu identique, il est indexé comme modifié
+     * et tous ses documents seront refaits au prochain passage.
+     */
+    private void record(String key, Stamp stamp) {
+        files.merge(key, stamp, (a, b) -> a.sameContent(b) ? a : INCONSISTENT);
+    }
+
+    /**
+     * Empreinte d'un include d'après le contenu inliné par prepare (hash, null si
+     * illisible). Sa date n'est indexée que si elle précède le début de la préparation
+     * de plus que la résolution de l'horloge: le fichier n'a alors pas changé depuis
+     * sa lecture. Sinon seule l'empreinte sera comparée au prochain passage.
+     */
+    private static Stamp includeStamp(URL include, byte[] hash, long prepareStart) {
+        Path local = localPath(include);
+        if (local == null) return hash == null ? new Stamp(-1, 0, null) : new Stamp(0, 0, hash);
+        Stamp stat = stat(local);
+        if (hash == null) return stat.size() < 0 ? stat : new Stamp(stat.size(), UNSETTLED, null);
+        return indexed(stat, stat.size(), hash, prepareStart);
+    }
+
+    /**
+     * Empreinte à indexer pour un contenu de size octets lu après le relevé stat pris à
+     * checkedAt: la date n'est gardée que si la taille lue est celle relevée et que la
+     * date précède le relevé de plus que la résolution de l'horloge (une réécriture de
+     * même taille dans ce délai garderait la même date).
+     */
+    private static Stamp indexed(Stamp stat, long size, byte[] hash, long checkedAt) {
+        boolean settled = stat.size() == size && stat.modified() < checkedAt - FragmentCache.MTIME_RESOLUTION_MS;
+        return new Stamp(size, settled ? stat.modified() : UNSETTLED, hash);
+    }
+
+    private static Stamp withHash(String key, Stamp stamp) {
+        if (stamp.size() < 0) return stamp;
+        try {
+            return new Stamp(stamp.size(), stamp.modified(), FragmentCache.shared().contentHash(new URL(key)));
+        } catch (IOException e) {
+            return stamp;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toUri().toString();
+    }
+
+    /** Taille et date d'un fichier, sans le lire (empreinte calculée seulement si besoin). */
+    private static Stamp stat(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis(), null);
+        } catch (IOException e) {
+            return new Stamp(-1, 0, null);
+        }
+    }
+
+    /** Empreinte d'un include: fichier local (taille et date), sinon contenu seul (taille 0). */
+    private static Stamp stamp(URL url) {
+        Path local = localPath(url);
+        if (local != null) return stat(local);
+        byte[] hash = FragmentCache.shared().contentHash(url);
+        return hash == null ? new Stamp(-1, 0, null) : new Stamp(0, 0, hash);
+    }
+
+    private static Path localPath(URL url) {
+        try {
+            URI uri = url.toURI();
+            return "file".equalsIgnoreCase(uri.getScheme()) ? Path.of(uri) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String manifest(String relative, FxmlSanitizer.Prepared prepared) {
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("source").value(relative)
+                .name("stylesheets").beginArray();
+        for (String css : prepared.stylesheets()) json.value(css);
+        json.endArray().name("includes").beginArray();
+        for (URL include : prepared.includes()) json.value(include.toExternalForm());
+        json.endArray().endObject();
+        return sb.append('\n').toString();
+    }
+
+    /** Supprime les sorties des documents source disparus depuis le dernier passage. */
+    private int removeStale() {
+        int removed = 0;
+        for (String relative : previousDocs.keySet()) {
+            if (docs.containsKey(relative) || failures.containsKey(relative)) continue;
+            Path target = output.resolve(relative);
+            try {
+                Files.deleteIfExists(target);
+                Files.deleteIfExists(target.resolveSibling(target.getFileName() + MANIFEST_SUFFIX));
+                removed++;
+            } catch (IOException e) {
+                failures.put(relative, "suppression impossible: " + describe(e));
+            }
+        }
+        return removed;
+    }
+
+    /** Écriture atomique (fichier temporaire puis renommage): pas de sortie tronquée. */
+    private static void write(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        move(temp, target);
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // --- Index ---
+
+    /** Relit l'index du passage précédent; absent, illisible ou d'un autre dossier source: tout est refait. */
+    private void readIndex() {
+        Path index = output.resolve(INDEX);
+        if (!Files.exists(index)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) return;
+            if (!in.readUTF().equals(source.toUri().toString())) return;
+            int fileCount = in.readInt();
+            Map<String, Stamp> readFiles = new HashMap<>();
+            List<String> keys = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                String key = in.readUTF();
+                keys.add(key);
+                readFiles.put(key, readStamp(in));
+            }
+            int docCount = in.readInt();
+            Map<String, Doc> readDocs = new HashMap<>();
+            for (int i = 0; i < docCount; i++) {
+                String relative = in.readUTF();
+                Stamp stamp = readFiles.get(keys.get(in.readInt()));
+                int includeCount = in.readInt();
+                List<String> includes = new ArrayList<>(includeCount);
+                for (int j = 0; j < includeCount; j++) includes.add(keys.get(in.readInt()));
+                readDocs.put(relative, new Doc(stamp, includes));
+            }
+            previousFiles.putAll(readFiles);
+            previousDocs.putAll(readDocs);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Index illisible, tout est refait: " + e.getMessage());
+            previousFiles.clear();
+            previousDocs.clear();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        // Les documents en erreur ne sont pas indexés: ils seront retentés
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        Map<String, Doc> sorted = new TreeMap<>(docs);
+        for (Map.Entry<String, Doc> doc : sorted.entrySet()) {
+            String own = key(source.resolve(doc.getKey()));
+            if (!files.containsKey(own)) files.put(own, doc.getValue().source());
+            for (String k : concat(own, doc.getValue().includes())) {
+                if (files.containsKey(k) && ids.putIfAbsent(k, keys.size()) == null) keys.add(k);
+            }
+        }
+        Path index = output.resolve(INDEX);
+        Path temp = index.resolveSibling(INDEX + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(source.toUri().toString());
+            out.writeInt(keys.size());
+            for (String k : keys) {
+                out.writeUTF(k);
+                writeStamp(out, files.get(k));
+            }
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, Doc> doc : sorted.entrySet()) {
+                out.writeUTF(doc.getKey());
+                out.writeInt(ids.get(key(source.resolve(doc.getKey()))));
+                List<String> includes = doc.getValue().includes().stream().filter(ids::containsKey).toList();
+                out.writeInt(includes.size());
+                for (String include : includes) out.writeInt(ids.get(include));
+            }
+        }
+        move(temp, index);
+    }
+
+    private static List<String> concat(String first, List<String> rest) {
+        List<String> all = new ArrayList<>(rest.size() + 1);
+        all.add(first);
+        all.addAll(rest);
+        return all;
+    }
+
+    private static Stamp readStamp(DataInputStream in) throws IOException {
+        long size = in.readLong();
+        long modified = in.readLong();
+        int length = in.readUnsignedByte();
+        byte[] hash = null;
+        if (length > 0) {
+            hash = new byte[length];
+            in.readFully(hash);
+        }
+        return new Stamp(size, modified, hash);
+    }
+
+    private static void writeStamp(DataOutputStream out, Stamp stamp) throws IOException {
+        out.writeLong(stamp.size());
+        out.writeLong(stamp.modified());
+        byte[] hash = stamp.hash();
+        out.writeByte(hash == null ? 0 : hash.length);
+        if (hash != null) out.write(hash);
+    }
+
+    private static String describe(Throwable e) {
+        String message = e.getMessage();
+        return e.getClass().getSimpleName() + (message != null ? ": " + message : "");
+    }
+}
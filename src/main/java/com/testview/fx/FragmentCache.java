@@ -0,0 +1,310 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache partagé (à l'échelle du processus) des fragments FXML inclus, déjà nettoyés.
+ *
+ * Clé: URL résolue de l'include. Une entrée reste valide tant que la date de
+ * modification et la taille du fichier (URLs file:) ou la date annoncée par la
+ * connexion (autres URLs) sont inchangées. Date et taille sont relevées avant la
+ * lecture et comparées séparément; une date trop proche du relevé (dans la
+ * résolution de l'horloge du système de fichiers) n'est pas fiable, car le fichier
+ * a pu être réécrit à la même taille sans que la date change. Sans horodatage
+ * fiable, on relit le contenu et on compare son empreinte SHA-256 avant de le
+ * re-nettoyer.
+ *
+ * L'éviction est de type LRU, bornée par la taille mémoire estimée des fragments
+ * (propriété système testview.fragmentCache.maxBytes, 64 Mo par défaut).
+ *
+ * {@link #contentHash} sert aussi pour d'autres ressources (feuilles de style, images):
+ * leur empreinte est gardée avec son relevé, selon la même règle, pour ne pas les
+ * relire à chaque vérification.
+ */
+final class FragmentCache {
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final FragmentCache SHARED =
+            new FragmentCache(Long.getLong("testview.fragmentCache.maxBytes", DEFAULT_MAX_BYTES));
+
+    /** Résolution des dates de modification: 2 s sur FAT, 1 s sur ext3 et en HTTP. */
+    static final long MTIME_RESOLUTION_MS = 2000;
+
+    /**
+     * Date de modification (ms, 0 si inconnue) et taille (-1 si inconnue) d'une
+     * ressource, relevées à l'instant checkedAt, avant sa lecture.
+     */
+    record Stamp(long modified, long size, long checkedAt) {
+        static final Stamp UNKNOWN = new Stamp(0, -1, 0);
+
+        /**
+         * La date suffit-elle à dire que le contenu n'a pas changé depuis le relevé ?
+         * Non si elle tombe dans la résolution de l'horloge précédant le relevé: une
+         * réécriture de même taille dans ce délai garderait la même date.
+         */
+        boolean settled() {
+            return modified > 0 && modified < checkedAt - MTIME_RESOLUTION_MS;
+        }
+
+        boolean sameFile(Stamp other) {
+            return modified == other.modified && size == other.size;
+        }
+    }
+
+    private static final class Entry {
+        final FxmlFragment fragment;
+        final byte[] hash;
+        volatile Stamp stamp;
+
+        Entry(FxmlFragment fragment, byte[] hash, Stamp stamp) {
+            this.fragment = fragment;
+            this.hash = hash;
+            this.stamp = stamp;
+        }
+    }
+
+    /** Empreinte d'une ressource qui n'est pas un fragment, et le relevé qui l'accompagne. */
+    private record Known(Stamp stamp, byte[] hash) {}
+
+    private static final int MAX_KNOWN = 4096;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Known> known = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Known> eldest) {
+            return size() > MAX_KNOWN;
+        }
+    };
+    private long currentBytes;
+    private long hits;
+    private long misses;
+
+    FragmentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static FragmentCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Retourne le fragment nettoyé pour l'URL donnée, depuis le cache s'il est
+     * encore à jour, sinon en le lisant et le nettoyant.
+     */
+    FxmlFragment get(URL url) throws IOException {
+        LoadEvents.IncludeFetch event = new LoadEvents.IncludeFetch();
+        event.begin();
+        FxmlFragment fragment = fetch(url, event);
+        if (event.shouldCommit()) {
+            event.url = url.toExternalForm();
+            event.chars = fragment.text.length();
+            event.commit();
+        }
+        return fragment;
+    }
+
+    private FxmlFragment fetch(URL url, LoadEvents.IncludeFetch event) throws IOException {
+        String key = url.toExternalForm();
+        Stamp stamp = stamp(url);
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && unchanged(cached.stamp, stamp)) {
+            synchronized (this) { hits++; }
+            event.cached = true;
+            return cached.fragment;
+        }
+        Read read = read(url, stamp, cached != null ? cached.stamp : null);
+        stamp = read.stamp();
+        if (read.bytes() == null) {
+            // 304: inchangé depuis la date connue
+            cached.stamp = stamp;
+            synchronized (this) { hits++; }
+            event.cached = true;
+            return cached.fragment;
+        }
+        byte[] bytes = read.bytes();
+        byte[] hash = sha256(bytes);
+        if (cached != null && Arrays.equals(cached.hash, hash)) {
+            cached.stamp = stamp;
+            synchronized (this) { hits++; }
+            event.cached = true;
+            return cached.fragment;
+        }
+        FxmlFragment fragment = FxmlFragment.parse(new String(bytes, StandardCharsets.UTF_8), url, hash);
+        put(key, new Entry(fragment, hash, stamp));
+        return fragment;
+    }
+
+    /**
+     * Empreinte SHA-256 du contenu actuel de la ressource, sans la nettoyer: celle
+     * du fragment en cache (ou de la dernière empreinte calculée) si son horodatage
+     * n'a pas changé, sinon relue. Null si la ressource est illisible (include
+     * introuvable).
+     */
+    byte[] contentHash(URL url) {
+        String key = url.toExternalForm();
+        Stamp stamp = stamp(url);
+        Entry cached;
+        Known previous;
+        synchronized (this) {
+            cached = entries.get(key);
+            previous = cached == null ? known.get(key) : null;
+        }
+        if (cached != null && unchanged(cached.stamp, stamp)) return cached.hash;
+        if (previous != null && unchanged(previous.stamp(), stamp)) return previous.hash();
+        try {
+            Stamp before = cached != null ? cached.stamp : previous != null ? previous.stamp() : null;
+            Read read = read(url, stamp, before);
+            if (read.bytes() == null) return cached != null ? cached.hash : previous.hash();
+            byte[] hash = sha256(read.bytes());
+            if (cached == null) {
+                synchronized (this) {
+                    known.put(key, new Known(read.stamp(), hash));
+                }
+            }
+            return hash;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * La ressource est-elle restée telle quelle depuis since (ms, horloge murale) ?
+     * Fichier: oui si sa date précède since de plus que la résolution de l'horloge.
+     * Ressource d'une archive jar: toujours. Autre URL: on ne peut pas le savoir.
+     */
+    static boolean unchangedSince(URL url, long since) {
+        if ("jar".equalsIgnoreCase(url.getProtocol())) return true;
+        if (!"file".equalsIgnoreCase(url.getProtocol())) return false;
+        Stamp stamp = stamp(url);
+        return stamp.modified() > 0 && stamp.modified() < since - MTIME_RESOLUTION_MS;
+    }
+
+    /** L'entrée relevée à before est-elle encore à jour d'après le relevé now ? */
+    private static boolean unchanged(Stamp before, Stamp now) {
+        return before.settled() && before.sameFile(now);
+    }
+
+    /** Contenu lu (null: réponse 304, inchangé) et relevé qui lui correspond. */
+    private record Read(byte[] bytes, Stamp stamp) {}
+
+    /**
+     * Lit la ressource. En HTTP, une seule requête: GET conditionnel si le relevé
+     * connu (known) a une date fiable, date et taille tirées de la réponse elle-même.
+     * Ailleurs, le relevé pris avant la lecture est gardé, sauf si la taille lue le
+     * contredit (fichier modifié entre-temps).
+     */
+    private static Read read(URL url, Stamp stamp, Stamp known) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof HttpURLConnection http) {
+            if (known != null && known.settled()) http.setIfModifiedSince(known.modified());
+            long now = System.currentTimeMillis();
+            if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED && known != null) {
+                http.getInputStream().close();
+                return new Read(null, new Stamp(known.modified(), known.size(), serverTime(http, now)));
+            }
+            byte[] bytes;
+            try (InputStream in = http.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
+            return new Read(bytes, new Stamp(http.getLastModified(), bytes.length, serverTime(http, now)));
+        }
+        byte[] bytes;
+        try (InputStream in = connection.getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        boolean sizeChanged = stamp.size() >= 0 && stamp.size() != bytes.length;
+        return new Read(bytes, sizeChanged ? Stamp.UNKNOWN : stamp);
+    }
+
+    /** Heure du serveur (en-tête Date), comparable à son Last-Modified; sinon l'heure locale. */
+    private static long serverTime(HttpURLConnection http, long now) {
+        long date = http.getDate();
+        return date > 0 ? date : now;
+    }
+
+    synchronized void invalidate(URL url) {
+        Entry removed = entries.remove(url.toExternalForm());
+        if (removed != null) currentBytes -= removed.fragment.weight();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        known.clear();
+        currentBytes = 0;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long sizeInBytes() {
+        return currentBytes;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        misses++;
+        Entry previous = entries.put(key, entry);
+        if (previous != null) currentBytes -= previous.fragment.weight();
+        currentBytes += entry.fragment.weight();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == entry) continue; // toujours garder le fragment qu'on vient de produire
+            currentBytes -= eldest.getValue().fragment.weight();
+            it.remove();
+        }
+    }
+
+    /** Date et taille de la ressource, sans la lire; Stamp.UNKNOWN si elles ne sont pas disponibles. */
+    private static Stamp stamp(URL url) {
+        long now = System.currentTimeMillis();
+        try {
+            if ("file".equalsIgnoreCase(url.getProtocol())) {
+                BasicFileAttributes attrs = Files.readAttributes(Path.of(url.toURI()), BasicFileAttributes.class);
+                return new Stamp(attrs.lastModifiedTime().toMillis(), attrs.size(), now);
+            }
+            // HTTP: pas de requête HEAD, la date vient de la réponse au GET (voir read)
+            if (isHttp(url)) return Stamp.UNKNOWN;
+            URLConnection connection = url.openConnection();
+            long lastModified = connection.getLastModified();
+            return lastModified > 0 ? new Stamp(lastModified, connection.getContentLengthLong(), now) : Stamp.UNKNOWN;
+        } catch (Exception e) {
+            return Stamp.UNKNOWN;
+        }
+    }
+
+    private static boolean isHttp(URL url) {
+        String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.testview.fx;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Un fichier FXML nettoyé isolément, indépendamment de ses includes.
+ *
+ * Le texte produit par {@link FxmlRewriter} est conservé d'un seul bloc, avec
+ * la position de chaque fx:include (à remplacer par le fragment inclus lors de
+ * l'assemblage) et celle de chaque bloc stylesheets (à retirer si l'on charge
+ * le document sans ses stylesheets). Un fragment ne dépend donc que de son
+ * propre contenu et de son URL: il peut être mis en cache et réutilisé tel quel
+ * par tous les documents qui l'incluent.
+ */
+final class FxmlFragment {
+
+    final URL baseUrl;
+    final String text;
+    // SHA-256 du contenu source dont le fragment est issu (null pour une racine lue ailleurs)
+    final byte[] hash;
+    // Fin de la déclaration <?xml ...?> initiale (0 si absente): interdite ailleurs
+    // qu'en tête de document, elle est omise quand le fragment est inclus
+    final int prologEnd;
+
+    // Points d'inclusion, par position croissante dans text
+    final int[] includeAt;
+    final String[] includeSource;
+
+    // Blocs stylesheets [start, end) dans text, et URLs associées [urlFrom, urlTo)
+    final int[] stylesheetStart;
+    final int[] stylesheetEnd;
+    final int[] urlFrom;
+    final int[] urlTo;
+    final List<String> stylesheetUrls;
+
+    private FxmlFragment(URL baseUrl, String text, byte[] hash, List<Integer> includeAt, List<String> includeSource,
+                         List<int[]> blocks, List<String> stylesheetUrls) {
+        this.baseUrl = baseUrl;
+        this.text = text;
+        this.hash = hash;
+        this.prologEnd = prologEnd(text);
+        this.includeAt = includeAt.stream().mapToInt(Integer::intValue).toArray();
+        this.includeSource = includeSource.toArray(new String[0]);
+        this.stylesheetStart = blocks.stream().mapToInt(b -> b[0]).toArray();
+        this.stylesheetEnd = blocks.stream().mapToInt(b -> b[1]).toArray();
+        this.urlFrom = blocks.stream().mapToInt(b -> b[2]).toArray();
+        this.urlTo = blocks.stream().mapToInt(b -> b[3]).toArray();
+        this.stylesheetUrls = List.copyOf(stylesheetUrls);
+    }
+
+    static FxmlFragment parse(CharSequence xml, URL baseUrl) {
+        return parse(xml, baseUrl, null);
+    }
+
+    /** Comme {@link #parse(CharSequence, URL)}, pour un contenu lu dont hash est l'empreinte. */
+    static FxmlFragment parse(CharSequence xml, URL baseUrl, byte[] hash) {
+        List<Integer> includeAt = new ArrayList<>();
+        List<String> includeSource = new ArrayList<>();
+        List<int[]> blocks = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        StringBuilder out = new StringBuilder(xml.length() + 64);
+        new FxmlRewriter()
+                .disablingLogic()
+                .resolvingAgainst(baseUrl)
+                .collectingStylesheets(urls)
+                .listeningToStylesheets((start, end, from, to) -> blocks.add(new int[]{start, end, from, to}))
+                .inliningIncludes((source, base, sink) -> {
+                    includeAt.add(sink.length());
+                    includeSource.add(source);
+                })
+                .rewrite(xml, out);
+        return new FxmlFragment(baseUrl, out.toString(), hash, includeAt, includeSource, blocks, urls);
+    }
+
+    private static int prologEnd(String text) {
+        int i = 0;
+        while (i < text.length() && (text.charAt(i) == '\uFEFF' || FxmlTokenizer.isWhitespace(text.charAt(i)))) i++;
+        if (!text.startsWith("<?xml", i) || i + 5 >= text.length()) return 0;
+        char c = text.charAt(i + 5);
+        if (c != '?' && !FxmlTokenizer.isWhitespace(c)) return 0;
+        int end = text.indexOf("?>", i + 5);
+        return end < 0 ? 0 : end + 2;
+    }
+
+    int includeCount() {
+        return includeAt.length;
+    }
+
+    /** Empreinte mémoire approximative, utilisée pour borner le cache. */
+    long weight() {
+        long w = 64L + 2L * text.length() + 8L * includeAt.length;
+        for (String s : includeSource) w += 40L + 2L * s.length();
+        for (String s : stylesheetUrls) w += 40L + 2L * s.length();
+        return w;
+    }
+}
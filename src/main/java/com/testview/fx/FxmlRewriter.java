@@ -0,0 +1,442 @@
+package com.testview.fx;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Réécriture FXML en une seule passe, au-dessus de {@link FxmlTokenizer}.
+ *
+ * Regroupe en un parcours linéaire ce que faisait auparavant une chaîne de
+ * remplacements par expressions régulières:
+ *  - suppression de fx:controller, fx:id, des handlers onXxx et des blocs fx:script;
+ *  - réécriture des chemins « @relatif » en URLs absolues (attributs de ressource
+ *    et texte des éléments String/URL);
+ *  - normalisation des blocs stylesheets en &lt;String&gt;url&lt;/String&gt;,
+ *    collecte des URLs et, au besoin, suppression des blocs;
+ *  - repérage des fx:include, délégués à un {@link IncludeHandler}.
+ *
+ * Tout ce qui n'est pas réécrit est recopié tel quel (y compris commentaires,
+ * CDATA et instructions de traitement).
+ *
+ * L'entrée peut aussi être une vue octet par octet d'un texte UTF-8 ({@link ByteChars},
+ * option {@link #readingUtf8Bytes()}): toute la syntaxe XML étant ASCII, le découpage
+ * est identique et les séquences multi-octets sont recopiées telles quelles. Seuls les
+ * textes produits (URLs résolues, valeurs collectées) sont décodés puis réencodés.
+ */
+final class FxmlRewriter {
+
+    /** Attributs dont la valeur « @chemin » est résolue par rapport à l'URL de base. */
+    private static final String[] RESOURCE_ATTRIBUTES = {"fx:value", "value", "url", "source", "href", "src"};
+
+    /** Reçoit chaque fx:include rencontré et écrit son contenu inliné dans la sortie. */
+    interface IncludeHandler {
+        void include(String source, URL baseUrl, StringBuilder out);
+    }
+
+    /**
+     * Notifié à la fermeture de chaque bloc stylesheets: positions du bloc dans la
+     * sortie et indices des URLs correspondantes dans la liste de collecte.
+     */
+    interface StylesheetsListener {
+        void block(int outStart, int outEnd, int urlFrom, int urlTo);
+    }
+
+    private boolean disableLogic;
+    private boolean utf8Bytes;
+    private URL baseUrl;
+    private boolean rewriteResources;
+    private boolean normalizeStylesheets;
+    private boolean stripStylesheets;
+    private List<String> stylesheetSink;
+    private IncludeHandler includeHandler;
+    private StylesheetsListener stylesheetsListener;
+
+    FxmlRewriter() {}
+
+    /** Supprime contrôleur, fx:id, handlers et scripts. */
+    FxmlRewriter disablingLogic() {
+        this.disableLogic = true;
+        return this;
+    }
+
+    /**
+     * L'entrée et la sortie sont des octets UTF-8 présentés comme caractères 0-255
+     * (voir {@link ByteChars}); les valeurs transmises aux écouteurs sont décodées.
+     */
+    FxmlRewriter readingUtf8Bytes() {
+        this.utf8Bytes = true;
+        return this;
+    }
+
+    /** Active la réécriture des chemins « @relatif » et la normalisation des stylesheets. */
+    FxmlRewriter resolvingAgainst(URL baseUrl) {
+        this.baseUrl = baseUrl;
+        this.rewriteResources = true;
+        this.normalizeStylesheets = true;
+        return this;
+    }
+
+    FxmlRewriter collectingStylesheets(List<String> sink) {
+        this.stylesheetSink = sink;
+        return this;
+    }
+
+    FxmlRewriter strippingStylesheets() {
+        this.stripStylesheets = true;
+        return this;
+    }
+
+    FxmlRewriter inliningIncludes(IncludeHandler handler) {
+        this.includeHandler = handler;
+        return this;
+    }
+
+    FxmlRewriter listeningToStylesheets(StylesheetsListener listener) {
+        this.stylesheetsListener = listener;
+        return this;
+    }
+
+    String rewrite(CharSequence xml) {
+        StringBuilder out = new StringBuilder(xml.length() + 64);
+        rewrite(xml, out);
+        return out.toString();
+    }
+
+    void rewrite(CharSequence xml, StringBuilder out) {
+        Pass pass = start(xml);
+        while (pass.step(out)) {
+            // un jeton par appel
+        }
+    }
+
+    /** Réécriture pas à pas, pour produire la sortie au fil de la lecture (flux). */
+    Pass start(CharSequence xml) {
+        return new Pass(new FxmlTokenizer(xml));
+    }
+
+    /** État d'une réécriture en cours; step() traite un jeton et l'écrit dans out. */
+    final class Pass {
+        private final FxmlTokenizer t;
+        // Position de sortie au début du bloc stylesheets courant (-1 hors bloc)
+        private int stylesheetsOut = -1;
+        private int stylesheetsUrls;
+
+        private Pass(FxmlTokenizer t) {
+            this.t = t;
+        }
+
+        /**
+         * Début, dans out, du bloc stylesheets encore ouvert (-1 sinon): la sortie à
+         * partir de cette position peut encore être retirée et ne doit pas être livrée.
+         */
+        int pendingBlockStart() {
+            return stylesheetsOut;
+        }
+
+        /** Traite le jeton suivant; false une fois l'entrée épuisée. */
+        boolean step(StringBuilder out) {
+            int type = t.next();
+            if (type == FxmlTokenizer.EOF) return false;
+            if (type == FxmlTokenizer.START_TAG) {
+                if (disableLogic && t.nameIs("fx:script")) {
+                    skipElement(t, "</fx:script>", out);
+                } else if (includeHandler != null && t.nameIs("fx:include") && hasSource(t)) {
+                    include(t, out);
+                } else if (stylesheetsOut < 0 && t.nameEndsWithProperty("stylesheets")) {
+                    int blockStart = out.length();
+                    writeStartTag(t, out);
+                    if (t.selfClosing) {
+                        endStylesheets(blockStart, urlCount(), out);
+                    } else {
+                        stylesheetsOut = blockStart;
+                        stylesheetsUrls = urlCount();
+                    }
+                } else if (stylesheetsOut >= 0 && normalizeStylesheets && (t.nameIs("String") || t.nameIs("URL"))) {
+                    writeStylesheetEntry(t, out);
+                } else if (stylesheetsOut >= 0 && !normalizeStylesheets && (t.nameIs("String") || t.nameIs("URL"))) {
+                    collectStylesheetEntry(t);
+                    writeStartTag(t, out);
+                } else {
+                    writeStartTag(t, out);
+                    if (rewriteResources && !t.selfClosing && (t.nameIs("String") || t.nameIs("URL"))) {
+                        rewriteElementText(t, out);
+                    }
+                }
+            } else if (type == FxmlTokenizer.END_TAG && stylesheetsOut >= 0 && t.nameEndsWithProperty("stylesheets")) {
+                out.append(t.input(), t.start, t.end);
+                endStylesheets(stylesheetsOut, stylesheetsUrls, out);
+                stylesheetsOut = -1;
+            } else {
+                out.append(t.input(), t.start, t.end);
+            }
+            return true;
+        }
+    }
+
+    private int urlCount() {
+        return stylesheetSink == null ? 0 : stylesheetSink.size();
+    }
+
+    private void endStylesheets(int blockStart, int urlFrom, StringBuilder out) {
+        if (stylesheetsListener != null) {
+            stylesheetsListener.block(blockStart, out.length(), urlFrom, urlCount());
+        }
+        if (stripStylesheets) out.setLength(blockStart);
+    }
+
+    // --- Balises ouvrantes ---
+
+    private void writeStartTag(FxmlTokenizer t, StringBuilder out) {
+        CharSequence in = t.input();
+        out.append(in, t.start, t.nameEnd);
+        for (int i = 0; i < t.attrCount; i++) {
+            if (disableLogic && isDisabledAttribute(t, i)) {
+                // Comme l'ancien motif "\s<attr>", seul l'espace qui précède immédiatement disparaît
+                int ws = t.attrNameStart[i] - t.attrWsStart[i];
+                if (ws > 1) out.append(in, t.attrWsStart[i], t.attrNameStart[i] - 1);
+                continue;
+            }
+            String resource = rewriteResources ? resourceAttributeName(t, i) : null;
+            if (resource != null && isAtPath(in, t.attrValueStart[i], t.attrValueEnd[i]) && t.attrQuote[i] != 0) {
+                String rel = text(in, t.attrValueStart[i] + 1, t.attrValueEnd[i]);
+                out.append(in, t.attrWsStart[i], t.attrNameStart[i])
+                        .append(resource).append("=\"");
+                appendText(FxmlSanitizer.escapeXml(resolve(rel)), out);
+                out.append('"');
+            } else {
+                out.append(in, t.attrWsStart[i], t.attrEnd[i]);
+            }
+        }
+        out.append(in, t.tailStart, t.end);
+    }
+
+    private static boolean isDisabledAttribute(FxmlTokenizer t, int i) {
+        if (t.attrQuote[i] == 0) return false;
+        if (t.attrNameIs(i, "fx:controller") || t.attrNameIs(i, "fx:id")) return true;
+        CharSequence in = t.input();
+        int s = t.attrNameStart[i];
+        int e = t.attrNameEnd[i];
+        // :onXxx (sensible à la casse), forme héritée de l'ancien sanitizer
+        if (e - s > 3 && in.charAt(s) == ':' && in.charAt(s + 1) == 'o' && in.charAt(s + 2) == 'n'
+                && in.charAt(s + 3) >= 'A' && in.charAt(s + 3) <= 'Z') {
+            return isAlphanumeric(in, s + 4, e);
+        }
+        // onXxx: handlers d'événements (onAction, onMouseClicked, ...)
+        return e - s > 2
+                && Character.toLowerCase(in.charAt(s)) == 'o'
+                && Character.toLowerCase(in.charAt(s + 1)) == 'n'
+                && isAsciiLetter(in.charAt(s + 2))
+                && isAlphanumeric(in, s + 3, e);
+    }
+
+    private static String resourceAttributeName(FxmlTokenizer t, int i) {
+        for (String name : RESOURCE_ATTRIBUTES) {
+            if (t.attrNameIs(i, name)) return name;
+        }
+        return null;
+    }
+
+    // --- fx:script / fx:include ---
+
+    private static void skipElement(FxmlTokenizer t, String closeTag, StringBuilder out) {
+        if (t.selfClosing) return;
+        int close = t.indexOfIgnoreCase(closeTag, t.end);
+        if (close < 0) {
+            // Balise jamais refermée: on laisse le reste intact, le chargeur signalera l'erreur
+            out.append(t.input(), t.start, t.input().length());
+            t.seek(t.input().length());
+            return;
+        }
+        t.seek(close + closeTag.length());
+    }
+
+    private static boolean hasSource(FxmlTokenizer t) {
+        int i = t.findAttribute("source");
+        return i >= 0 && t.attrQuote[i] != 0 && t.attrValueEnd[i] > t.attrValueStart[i];
+    }
+
+    private void include(FxmlTokenizer t, StringBuilder out) {
+        CharSequence in = t.input();
+        int i = t.findAttribute("source");
+        String source = text(in, t.attrValueStart[i], t.attrValueEnd[i]);
+        if (rewriteResources && isAtPath(in, t.attrValueStart[i], t.attrValueEnd[i])) {
+            source = resolve(source.substring(1));
+        }
+        if (!t.selfClosing) {
+            int close = t.indexOfIgnoreCase("</fx:include>", t.end);
+            if (close >= 0) t.seek(close + "</fx:include>".length());
+        }
+        includeHandler.include(source, baseUrl, out);
+    }
+
+    // --- Stylesheets ---
+
+    /**
+     * Écrit un enfant de bloc stylesheets sous la forme canonique &lt;String&gt;url&lt;/String&gt;.
+     * La valeur provient de l'attribut value/fx:value si le contenu est vide, sinon du texte.
+     */
+    private void writeStylesheetEntry(FxmlTokenizer t, StringBuilder out) {
+        CharSequence in = t.input();
+        String value = stylesheetValueAttribute(t);
+        if (t.selfClosing) {
+            if (value != null) {
+                appendStylesheet(value, out);
+            } else {
+                out.append("<String/>");
+            }
+            return;
+        }
+        int textStart = t.end;
+        int lt = t.indexOf('<', textStart);
+        int closeEnd = lt < 0 ? -1 : matchCloseTag(t, lt);
+        if (closeEnd < 0) {
+            // Contenu inattendu (éléments imbriqués...): on recopie sans normaliser
+            writeStartTag(t, out);
+            return;
+        }
+        String text;
+        if (value != null && isBlank(in, textStart, lt)) {
+            text = value;
+        } else {
+            text = elementText(in, textStart, lt);
+        }
+        appendStylesheet(text, out);
+        t.seek(closeEnd);
+    }
+
+    private void appendStylesheet(String text, StringBuilder out) {
+        out.append("<String>");
+        appendText(text, out);
+        out.append("</String>");
+        String url = text.trim();
+        if (stylesheetSink != null && !url.isEmpty()) stylesheetSink.add(url);
+    }
+
+    /** Collecte seule (document déjà normalisé ou non), sans réécriture. */
+    private void collectStylesheetEntry(FxmlTokenizer t) {
+        if (stylesheetSink == null) return;
+        String value = stylesheetValueAttribute(t);
+        if (t.selfClosing) {
+            if (value != null && !value.trim().isEmpty()) stylesheetSink.add(value.trim());
+            return;
+        }
+        int lt = t.indexOf('<', t.end);
+        if (lt < 0 || matchCloseTag(t, lt) < 0) return;
+        String url = text(t.input(), t.end, lt).trim();
+        if (url.isEmpty() && value != null) url = value.trim();
+        if (!url.isEmpty()) stylesheetSink.add(url);
+    }
+
+    private String stylesheetValueAttribute(FxmlTokenizer t) {
+        int i = t.findAttribute("value");
+        if (i < 0) i = t.findAttribute("fx:value");
+        if (i < 0 || t.attrQuote[i] == 0 || t.attrValueEnd[i] == t.attrValueStart[i]) return null;
+        CharSequence in = t.input();
+        if (rewriteResources && isAtPath(in, t.attrValueStart[i], t.attrValueEnd[i])) {
+            return FxmlSanitizer.escapeXml(resolve(text(in, t.attrValueStart[i] + 1, t.attrValueEnd[i])));
+        }
+        return text(in, t.attrValueStart[i], t.attrValueEnd[i]);
+    }
+
+    /** Texte d'un élément String/URL, avec résolution d'un éventuel « @relatif ». */
+    private String elementText(CharSequence in, int start, int end) {
+        if (rewriteResources) {
+            String resolved = resolveTextPath(in, start, end);
+            if (resolved != null) return resolved;
+        }
+        return text(in, start, end);
+    }
+
+    // --- Texte des éléments String/URL hors stylesheets ---
+
+    private void rewriteElementText(FxmlTokenizer t, StringBuilder out) {
+        int lt = t.indexOf('<', t.end);
+        if (lt < 0 || !isCloseTagOf(t, lt)) return;
+        String resolved = resolveTextPath(t.input(), t.end, lt);
+        if (resolved != null) {
+            appendText(resolved, out);
+            t.seek(lt);
+        }
+    }
+
+    /** Vrai si la balise fermante exacte du jeton courant (ex. "</String>") commence en lt. */
+    private static boolean isCloseTagOf(FxmlTokenizer t, int lt) {
+        int len = t.nameEnd - t.nameStart;
+        CharSequence in = t.input();
+        if (!t.startsWith(lt, "</") || lt + 2 + len >= in.length() || in.charAt(lt + 2 + len) != '>') return false;
+        for (int i = 0; i < len; i++) {
+            if (Character.toLowerCase(in.charAt(lt + 2 + i)) != Character.toLowerCase(in.charAt(t.nameStart + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** "  @chemin  " -> URL absolue échappée, ou null si le texte n'est pas un chemin « @ ». */
+    private String resolveTextPath(CharSequence in, int start, int end) {
+        int s = start;
+        while (s < end && FxmlTokenizer.isWhitespace(in.charAt(s))) s++;
+        if (s >= end || in.charAt(s) != '@') return null;
+        for (int i = s + 1; i < end; i++) {
+            if (in.charAt(i) == '"') return null;
+        }
+        String rel = text(in, s + 1, end).trim();
+        if (rel.isEmpty()) return null;
+        return FxmlSanitizer.escapeXml(resolve(rel));
+    }
+
+    /** Position après la balise fermante String/URL débutant en lt, ou -1. */
+    private static int matchCloseTag(FxmlTokenizer t, int lt) {
+        FxmlTokenizer probe = new FxmlTokenizer(t.input(), lt);
+        if (probe.next() != FxmlTokenizer.END_TAG) return -1;
+        if (!probe.nameIs("String") && !probe.nameIs("URL")) return -1;
+        return probe.end;
+    }
+
+    // --- Utilitaires ---
+
+    /** Texte de l'entrée entre start et end, décodé si l'entrée est une vue d'octets UTF-8. */
+    private String text(CharSequence in, int start, int end) {
+        return utf8Bytes ? ByteChars.decode(in, start, end) : in.subSequence(start, end).toString();
+    }
+
+    /** Écrit un texte produit par la réécriture, réencodé si la sortie est en octets UTF-8. */
+    private void appendText(String text, StringBuilder out) {
+        if (utf8Bytes) {
+            ByteChars.appendUtf8(text, out);
+        } else {
+            out.append(text);
+        }
+    }
+
+    private String resolve(String rel) {
+        try {
+            return new URL(baseUrl, rel).toExternalForm();
+        } catch (Exception ignored) {
+            return rel;
+        }
+    }
+
+    private static boolean isAtPath(CharSequence in, int start, int end) {
+        return end - start > 1 && in.charAt(start) == '@';
+    }
+
+    private static boolean isBlank(CharSequence in, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!FxmlTokenizer.isWhitespace(in.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isAlphanumeric(CharSequence in, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = in.charAt(i);
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9')) return false;
+        }
+        return true;
+    }
+}
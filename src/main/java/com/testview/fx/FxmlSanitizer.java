@@ -1,35 +1,30 @@
 package com.testview.fx;
 
-import java.util.regex.Pattern;
-
 /**
  * Nettoie un contenu FXML pour désactiver tout ce qui pourrait exiger du code
  * (contrôleurs, handlers, fx:id, scripts), afin de simplement visualiser l'UI.
- * Cette approche est basée sur des expressions régulières simples, suffisantes
- * pour un usage de test/aperçu. Elle n'altère pas la hiérarchie de nœuds.
+ * Le document est parcouru en une seule passe linéaire (voir {@link FxmlRewriter});
+ * tout ce qui n'est pas réécrit est recopié à l'identique. Elle n'altère pas la
+ * hiérarchie de nœuds.
  */
 public final class FxmlSanitizer {
     private FxmlSanitizer() {}
 
-    // Attribut fx:controller="..."
-    private static final Pattern FX_CONTROLLER = Pattern.compile("\\sfx:controller\\s*=\\s*\"[^\"]*\"", Pattern.CASE_INSENSITIVE);
-    // Attributs d'event handler: onAction, onMouseClicked, etc.
-    private static final Pattern ON_EVENT_ATTR = Pattern.compile("\\son[A-Z][A-Za-z0-9]*\\s*=\\s*\"[^\"]*\"", Pattern.CASE_INSENSITIVE);
-    // fx:id
-    private static final Pattern FX_ID = Pattern.compile("\\sfx:id\\s*=\\s*\"[^\"]*\"", Pattern.CASE_INSENSITIVE);
-    // fx:script blocks
-    private static final Pattern FX_SCRIPT = Pattern.compile("<fx:script[\\s\\S]*?</fx:script>", Pattern.CASE_INSENSITIVE);
+    /**
+     * Résultat prêt à charger: FXML nettoyé, includes inlinés, blocs stylesheets
+     * retirés, et URLs de styles collectées dans l'ordre du document. includes liste
+     * les URLs de tous les fichiers inclus (y compris ceux dont la lecture a échoué),
+     * c'est-à-dire les dépendances à surveiller pour recharger l'aperçu. includeHashes
+     * donne, par URL, l'empreinte SHA-256 du contenu effectivement inliné (null si la
+     * lecture a échoué): c'est elle qu'il faut enregistrer avec le résultat, pas celle
+     * d'une relecture ultérieure.
+     */
+    public record Prepared(String fxml, java.util.List<String> stylesheets, java.util.List<java.net.URL> includes,
+                           java.util.Map<String, byte[]> includeHashes) {}
 
     public static String sanitize(String xml) {
         if (xml == null) return "";
-        String out = xml;
-        out = FX_SCRIPT.matcher(out).replaceAll("");
-        out = FX_CONTROLLER.matcher(out).replaceAll("");
-        out = ON_EVENT_ATTR.matcher(out).replaceAll("");
-        out = FX_ID.matcher(out).replaceAll("");
-        // Supprimer attributs de type onX="#{...}" éventuels avec espaces
-        out = out.replaceAll("\\s:on[A-Z][A-Za-z0-9]*\\s*=\\s*\"[^\"]*\"", "");
-        return out;
+        return new FxmlRewriter().disablingLogic().rewrite(xml);
     }
 
     /**
@@ -39,46 +34,183 @@ public final class FxmlSanitizer {
      * @return FXML prêt à charger
      */
     public static String sanitizeInlineIncludes(String xml, java.net.URL baseUrl) {
-        return sanitizeInlineIncludes(xml, baseUrl, new java.util.HashSet<>());
+        if (xml == null) return "";
+        return assemble(xml, baseUrl, null, false, new LoadMetrics(String.valueOf(baseUrl))).out.toString();
+    }
+
+    /**
+     * Équivalent en une passe de {@link #sanitizeInlineIncludes(String, java.net.URL)}
+     * suivi de {@link #extractStylesheetUrls(String)} et {@link #stripStylesheets(String)}.
+     * Les fragments inclus sont traités de la même manière, récursivement.
+     */
+    public static Prepared prepare(String xml, java.net.URL baseUrl) {
+        return prepare(xml, baseUrl, null);
+    }
+
+    /**
+     * Variante de {@link #prepare(String, java.net.URL)} connaissant l'URL du document
+     * lui-même, afin qu'un include qui revient vers la racine soit signalé comme cycle.
+     */
+    public static Prepared prepare(String xml, java.net.URL baseUrl, java.net.URL documentUrl) {
+        return prepare(xml, baseUrl, documentUrl,
+                new LoadMetrics(String.valueOf(documentUrl != null ? documentUrl : baseUrl)));
+    }
+
+    /** Comme {@link #prepare(String, java.net.URL, java.net.URL)}, en consignant les mesures dans metrics. */
+    static Prepared prepare(String xml, java.net.URL baseUrl, java.net.URL documentUrl, LoadMetrics metrics) {
+        if (xml == null) return new Prepared("", java.util.List.of(), java.util.List.of(), java.util.Map.of());
+        Assembly assembly = assemble(xml, baseUrl, documentUrl, true, metrics);
+        return new Prepared(assembly.out.toString(), assembly.styles,
+                new java.util.ArrayList<>(assembly.includes.values()), assembly.includeHashes());
+    }
+
+    /** Nettoyage de la racine puis assemblage avec ses includes, chaque étape étant mesurée. */
+    private static Assembly assemble(String xml, java.net.URL baseUrl, java.net.URL documentUrl,
+                                     boolean stripStylesheets, LoadMetrics metrics) {
+        LoadEvents.Sanitize sanitizeEvent = new LoadEvents.Sanitize();
+        sanitizeEvent.begin();
+        long start = System.nanoTime();
+        FxmlFragment root = FxmlFragment.parse(xml, baseUrl);
+        long sanitized = System.nanoTime();
+        metrics.sourceChars = xml.length();
+        metrics.stage(LoadMetrics.Stage.SANITIZE, sanitized - start);
+        sanitizeEvent.document = metrics.document;
+        sanitizeEvent.chars = xml.length();
+        sanitizeEvent.commit();
+
+        LoadEvents.Includes includesEvent = new LoadEvents.Includes();
+        includesEvent.begin();
+        Assembly assembly = new Assembly(stripStylesheets ? new java.util.ArrayList<>() : null,
+                resolverFor(root), root.text.length());
+        if (documentUrl != null) assembly.ancestors.add(documentUrl.toString());
+        assembly.append(root);
+        metrics.stage(LoadMetrics.Stage.INCLUDES, System.nanoTime() - sanitized);
+        metrics.includes = assembly.spliced;
+        metrics.distinctIncludes = assembly.includes.size();
+        metrics.includeDepth = assembly.maxDepth;
+        metrics.outputChars = assembly.out.length();
+        metrics.stylesheets = assembly.styles != null ? assembly.styles.size() : root.stylesheetUrls.size();
+        includesEvent.document = metrics.document;
+        includesEvent.includes = assembly.spliced;
+        includesEvent.distinct = assembly.includes.size();
+        includesEvent.depth = assembly.maxDepth;
+        includesEvent.chars = assembly.out.length();
+        includesEvent.commit();
+        return assembly;
+    }
+
+    private static IncludeResolver resolverFor(FxmlFragment root) {
+        return IncludeResolver.forRoot(root, FragmentCache.shared());
     }
 
-    private static String sanitizeInlineIncludes(String xml, java.net.URL baseUrl, java.util.Set<String> visited) {
-        String sanitized = sanitize(xml);
-        // Réécriture des références CSS relatives (fx:value="@...") en URLs absolues basées sur baseUrl
-        sanitized = rewriteStylesheetUrls(sanitized, baseUrl);
-        // Recherche des includes: <fx:include ... source="..." .../>
-        java.util.regex.Pattern includeTag = java.util.regex.Pattern.compile(
-                "<fx:include\\s+([^>]*?)source\\s*=\\s*\"([^\"]+)\"([^>]*)/?>(?:</fx:include>)?",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher m = includeTag.matcher(sanitized);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String source = m.group(2);
-            String inlined = "";
+    /**
+     * Recompose un document à partir de ses fragments. Les fragments inclus sont
+     * préchargés en parallèle par {@link IncludeResolver} et servis par
+     * {@link FragmentCache}: un même fichier inclus plusieurs fois (graphe en losange,
+     * plusieurs fenêtres) n'est lu et nettoyé qu'une fois. Seuls les ancêtres du
+     * point d'inclusion courant comptent pour la détection de cycle.
+     */
+    static final class Assembly {
+        /** Si non null, les blocs stylesheets sont retirés et leurs URLs collectées ici. */
+        final java.util.List<String> styles;
+        final IncludeResolver resolver;
+        final java.util.Set<String> ancestors = new java.util.HashSet<>();
+        final java.util.Map<String, java.net.URL> includes = new java.util.LinkedHashMap<>();
+        // Fragment inliné pour chaque URL (null si sa lecture a échoué): un fichier inclus
+        // plusieurs fois l'est avec le même contenu, même s'il change pendant l'assemblage
+        private final java.util.Map<String, FxmlFragment> fetched = new java.util.HashMap<>();
+        final StringBuilder out;
+        // Includes effectivement inlinés (avec répétitions) et profondeur maximale atteinte
+        int spliced;
+        int maxDepth;
+        private int depth;
+
+        Assembly(java.util.List<String> styles, IncludeResolver resolver, int expectedLength) {
+            this.styles = styles;
+            this.resolver = resolver;
+            this.out = new StringBuilder(expectedLength + 64);
+        }
+
+        void append(FxmlFragment fragment) {
+            append(fragment, 0);
+        }
+
+        private void append(FxmlFragment fragment, int from) {
+            String text = fragment.text;
+            int pos = from;
+            int inc = 0;
+            int block = 0;
+            while (true) {
+                int nextInclude = inc < fragment.includeAt.length ? fragment.includeAt[inc] : Integer.MAX_VALUE;
+                int nextBlock = styles != null && block < fragment.stylesheetStart.length
+                        ? fragment.stylesheetStart[block] : Integer.MAX_VALUE;
+                if (nextInclude == Integer.MAX_VALUE && nextBlock == Integer.MAX_VALUE) break;
+                if (nextBlock <= nextInclude) {
+                    // Bloc stylesheets retiré du texte, URLs collectées (includes internes ignorés)
+                    out.append(text, pos, nextBlock);
+                    styles.addAll(fragment.stylesheetUrls.subList(fragment.urlFrom[block], fragment.urlTo[block]));
+                    pos = fragment.stylesheetEnd[block];
+                    while (inc < fragment.includeAt.length && fragment.includeAt[inc] < pos) inc++;
+                    block++;
+                } else {
+                    out.append(text, pos, nextInclude);
+                    include(fragment.includeSource[inc], fragment.baseUrl);
+                    pos = nextInclude;
+                    inc++;
+                }
+            }
+            out.append(text, pos, text.length());
+        }
+
+        void include(String source, java.net.URL baseUrl) {
+            String key = null;
             try {
                 java.net.URL includeUrl = new java.net.URL(baseUrl, source);
-                String key = includeUrl.toString();
-                if (visited.contains(key)) {
-                    inlined = "<!-- fx:include cycle détecté pour " + escapeXml(source) + " -->";
-                } else {
-                    visited.add(key);
-                    String includeContent = new String(includeUrl.openStream().readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
-                    String processed = sanitizeInlineIncludes(includeContent, includeUrl, visited);
-                    inlined = processed;
+                key = includeUrl.toString();
+                if (!ancestors.add(key)) {
+                    key = null;
+                    out.append("<!-- fx:include cycle détecté pour ").append(escapeXml(source)).append(" -->");
+                    return;
+                }
+                includes.putIfAbsent(key, includeUrl);
+                FxmlFragment included = fetched.get(key);
+                if (included == null) {
+                    // Un échec reste noté (empreinte null) même si une occurrence suivante réussit
+                    boolean failedBefore = fetched.containsKey(key);
+                    fetched.put(key, null);
+                    included = resolver.fetch(includeUrl);
+                    if (!failedBefore) fetched.put(key, included);
+                }
+                spliced++;
+                maxDepth = Math.max(maxDepth, ++depth);
+                try {
+                    append(included, included.prologEnd);
+                } finally {
+                    depth--;
                 }
             } catch (Exception e) {
-                inlined = "<!-- Impossible d'inclure: " + escapeXml(source) + " : " + escapeXml(e.getMessage()) + " -->";
+                out.append("<!-- Impossible d'inclure: ").append(escapeXml(source))
+                        .append(" : ").append(escapeXml(e.getMessage())).append(" -->");
+            } finally {
+                if (key != null) ancestors.remove(key);
+            }
+        }
+
+        /** Empreinte de chaque include, telle que lue pour cet assemblage (null si illisible). */
+        java.util.Map<String, byte[]> includeHashes() {
+            java.util.Map<String, byte[]> hashes = new java.util.LinkedHashMap<>();
+            for (String key : includes.keySet()) {
+                FxmlFragment fragment = fetched.get(key);
+                hashes.put(key, fragment != null ? fragment.hash : null);
             }
-            m.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(inlined));
+            return hashes;
         }
-        m.appendTail(sb);
-        return sb.toString();
     }
 
     /**
      * Extrait toutes les URLs de feuilles de style présentes dans les blocs
      * <stylesheets> et <X.stylesheets> du FXML fourni. Cette méthode suppose
-     * que {@link #rewriteStylesheetUrls(String, java.net.URL)} a déjà été appelée,
+     * que {@link #sanitizeInlineIncludes(String, java.net.URL)} a déjà été appelée,
      * donc les chemins relatifs commençant par @ ont été réécrits en URLs absolues.
      * Elle est tolérante et acceptera aussi bien <String>texte</String> que
      * <URL>texte</URL> ou encore des attributs value="..." s'il en reste.
@@ -86,42 +218,7 @@ public final class FxmlSanitizer {
     public static java.util.List<String> extractStylesheetUrls(String xml) {
         java.util.List<String> urls = new java.util.ArrayList<>();
         if (xml == null || xml.isEmpty()) return urls;
-
-        java.util.regex.Pattern block = java.util.regex.Pattern.compile(
-                "(<(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets[^>]*>)([\\s\\S]*?)(</(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets>)",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher bm = block.matcher(xml);
-        while (bm.find()) {
-            String inner = bm.group(2);
-            if (inner == null) continue;
-            // 1) Balises <String>...</String>
-            java.util.regex.Pattern pString = java.util.regex.Pattern.compile(
-                    "<\\s*String[^>]*>([\\s\\S]*?)</\\s*String\\s*>",
-                    java.util.regex.Pattern.CASE_INSENSITIVE);
-            java.util.regex.Matcher ms = pString.matcher(inner);
-            while (ms.find()) {
-                String url = ms.group(1).trim();
-                if (!url.isEmpty()) urls.add(url);
-            }
-            // 2) Balises <URL>...</URL>
-            java.util.regex.Pattern pUrlText = java.util.regex.Pattern.compile(
-                    "<\\s*URL[^>]*>([\\s\\S]*?)</\\s*URL\\s*>",
-                    java.util.regex.Pattern.CASE_INSENSITIVE);
-            java.util.regex.Matcher mu = pUrlText.matcher(inner);
-            while (mu.find()) {
-                String url = mu.group(1).trim();
-                if (!url.isEmpty()) urls.add(url);
-            }
-            // 3) Formes auto-fermantes avec value="..."
-            java.util.regex.Pattern pValue = java.util.regex.Pattern.compile(
-                    "<\\s*(?:String|URL)[^>]*\\svalue=\"([^\"]+)\"[^>]*/\\s*>",
-                    java.util.regex.Pattern.CASE_INSENSITIVE);
-            java.util.regex.Matcher mv = pValue.matcher(inner);
-            while (mv.find()) {
-                String url = mv.group(1).trim();
-                if (!url.isEmpty()) urls.add(url);
-            }
-        }
+        new FxmlRewriter().collectingStylesheets(urls).rewrite(xml);
         return urls;
     }
 
@@ -132,141 +229,10 @@ public final class FxmlSanitizer {
      */
     public static String stripStylesheets(String xml) {
         if (xml == null || xml.isEmpty()) return xml;
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(
-                "<(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets[^>]*>[\\s\\S]*?</(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets>",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        return p.matcher(xml).replaceAll("");
-    }
-
-    /**
-     * Convertit les valeurs fx:value="@relpath.css" en URLs absolues basées sur baseUrl,
-     * afin que les CSS des fichiers inclus restent correctement résolues après inlining.
-     */
-    private static String rewriteStylesheetUrls(String xml, java.net.URL baseUrl) {
-        if (xml == null) return "";
-        String out = xml;
-
-        // 1) Attribut fx:value="@..."
-        out = rewriteAttributeAtPath(out, baseUrl, "fx:value");
-
-        // 2) Attribut value="@..."
-        out = rewriteAttributeAtPath(out, baseUrl, "value");
-
-        // 3) Contenu texte direct dans <String> ou <URL>: <String>@styles.css</String>
-        out = rewriteElementTextAtPath(out, baseUrl, "String");
-        out = rewriteElementTextAtPath(out, baseUrl, "URL");
-
-        // 3bis) Attributs génériques de ressource 'url' (ex: <Image url="@image.png"/>)
-        //      On réécrit aussi ces chemins relatifs en URLs absolues basées sur baseUrl.
-        out = rewriteAttributeAtPath(out, baseUrl, "url");
-
-        // 3ter) Autres attributs de ressource courants pouvant utiliser la notation @relative
-        //       - source (Media, AudioClip, etc.)
-        //       - href (Hyperlink, WebView content, etc.)
-        //       - src (quelques contrôles personnalisés ou Web-related)
-        out = rewriteAttributeAtPath(out, baseUrl, "source");
-        out = rewriteAttributeAtPath(out, baseUrl, "href");
-        out = rewriteAttributeAtPath(out, baseUrl, "src");
-
-        // 4) Normaliser les éléments enfants de <stylesheets>: remplacer <String> par <URL>
-        out = normalizeStylesheetElementTypes(out);
-
-        return out;
-    }
-
-    private static String rewriteAttributeAtPath(String xml, java.net.URL baseUrl, String attrName) {
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(
-                attrName + "\\s*=\\s*\"@([^\"]+)\"",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher m = p.matcher(xml);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String rel = m.group(1);
-            String absolute = rel;
-            try {
-                java.net.URL absUrl = new java.net.URL(baseUrl, rel);
-                absolute = absUrl.toExternalForm();
-            } catch (Exception ignored) {}
-            String replacement = attrName + "=\"" + escapeXml(absolute) + "\"";
-            m.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(replacement));
-        }
-        m.appendTail(sb);
-        return sb.toString();
-    }
-
-    /**
-     * Dans les blocs <stylesheets> (y compris la forme propriété <X.stylesheets>),
-     * normalise tous les enfants en forme canonique JavaFX acceptée de manière stricte:
-     *   <String>absolute-url</String>
-     * - Supprime tout attribut fx:value/value et transforme le contenu en texte interne.
-     * - Convertit toute variante <URL ...>…</URL> ou <URL value="…"/> en <String>…</String>.
-     * - Convertit également <String value="…"/> en <String>…</String>.
-     * - Laisse le reste du document inchangé.
-     */
-    private static String normalizeStylesheetElementTypes(String xml) {
-        if (xml == null || xml.isEmpty()) return xml;
-
-        // Couvrir deux formes équivalentes en FXML:
-        //  - <stylesheets> ... </stylesheets>
-        //  - <Node.stylesheets> ... </Node.stylesheets>
-        // On limite strictement la normalisation à ces blocs.
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(
-                "(<(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets[^>]*>)([\\s\\S]*?)(</(?:[A-Za-z0-9_\\-.]+\\.)?stylesheets>)",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher m = p.matcher(xml);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String open = m.group(1);
-            String inner = m.group(2);
-            String close = m.group(3);
-
-            // Objectif: finir en <String>...</String> uniquement
-            String normalized = inner
-                    // 1) Harmoniser fx:value -> value pour faciliter les règles suivantes
-                    .replaceAll("(?i)\\sfx:value(\\s*=)", " value$1")
-                    // 2) Développer <String value="..."/> -> <String>...</String>
-                    .replaceAll("(?i)<\\s*String([^>]*)\\svalue=\"([^\"]+)\"([^>]*)/\\s*>", "<String>$2</String>")
-                    .replaceAll("(?i)<\\s*String([^>]*)\\svalue='([^']+)'([^>]*)/\\s*>", "<String>$2</String>")
-                    // 3) Développer <String value="...">...</String> (prioriser l'attribut)
-                    .replaceAll("(?i)<\\s*String([^>]*)\\svalue=\"([^\"]+)\"([^>]*)>\\s*</\\s*String\\s*>", "<String>$2</String>")
-                    .replaceAll("(?i)<\\s*String([^>]*)\\svalue='([^']+)'([^>]*)>\\s*</\\s*String\\s*>", "<String>$2</String>")
-                    // 4) Convertir toutes formes URL vers String
-                    //    <URL value="..."/> -> <String>...</String>
-                    .replaceAll("(?i)<\\s*URL([^>]*)\\svalue=\"([^\"]+)\"([^>]*)/\\s*>", "<String>$2</String>")
-                    .replaceAll("(?i)<\\s*URL([^>]*)\\svalue='([^']+)'([^>]*)/\\s*>", "<String>$2</String>")
-                    //    <URL>...</URL> -> <String>...</String>
-                    .replaceAll("(?i)<\\s*URL[^>]*>([\\s\\S]*?)</\\s*URL\\s*>", "<String>$1</String>")
-                    // 5) Supprimer tout attribut restant sur <String ...> -> <String>
-                    .replaceAll("(?i)<\\s*String[^>]*>", "<String>");
-
-            m.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(open + normalized + close));
-        }
-        m.appendTail(sb);
-        return sb.toString();
-    }
-
-    private static String rewriteElementTextAtPath(String xml, java.net.URL baseUrl, String tag) {
-        // Remplace >@rel< (en ignorant espaces autour) par >absolute< pour le tag donné
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(
-                "(<" + tag + "[\\s>][^>]*>)(\\s*)@([^<\"]+?)(\\s*)(</" + tag + ">)",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher m = p.matcher(xml);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String rel = m.group(3).trim();
-            String absolute = rel;
-            try {
-                java.net.URL absUrl = new java.net.URL(baseUrl, rel);
-                absolute = absUrl.toExternalForm();
-            } catch (Exception ignored) {}
-            String replacement = m.group(1) + escapeXml(absolute) + m.group(5);
-            m.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(replacement));
-        }
-        m.appendTail(sb);
-        return sb.toString();
+        return new FxmlRewriter().strippingStylesheets().rewrite(xml);
     }
 
-    private static String escapeXml(String s) {
+    static String escapeXml(String s) {
         if (s == null) return "";
         return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
     }
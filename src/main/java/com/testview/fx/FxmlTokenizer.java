@@ -0,0 +1,285 @@
+package com.testview.fx;
+
+/**
+ * Découpage lexical minimal et tolérant d'un document FXML, en une seule passe.
+ *
+ * Le tokenizer ne construit aucun arbre et n'alloue pas de chaîne par jeton:
+ * il expose des positions (début/fin) dans le texte source. Les tableaux
+ * d'attributs sont réutilisés d'un jeton à l'autre, ce qui borne l'allocation
+ * quelle que soit la taille du document.
+ *
+ * Il n'est pas validant: toute construction qu'il ne reconnaît pas est
+ * restituée telle quelle sous forme de texte, afin que la sortie reste fidèle
+ * à l'entrée octet pour octet hors des zones réécrites.
+ */
+final class FxmlTokenizer {
+
+    static final int EOF = 0;
+    static final int TEXT = 1;
+    static final int COMMENT = 2;
+    static final int CDATA = 3;
+    static final int PI = 4;
+    static final int DOCTYPE = 5;
+    static final int START_TAG = 6;
+    static final int END_TAG = 7;
+
+    private final CharSequence in;
+    private final int length;
+    private int pos;
+
+    // Jeton courant
+    int start;
+    int end;
+    int nameStart;
+    int nameEnd;
+    boolean selfClosing;
+    /** Début de la « queue » d'une balise ouvrante: espaces finaux puis "/>" ou ">". */
+    int tailStart;
+
+    // Attributs du jeton START_TAG courant
+    int attrCount;
+    int[] attrWsStart = new int[8];
+    int[] attrNameStart = new int[8];
+    int[] attrNameEnd = new int[8];
+    int[] attrValueStart = new int[8];
+    int[] attrValueEnd = new int[8];
+    int[] attrEnd = new int[8];
+    char[] attrQuote = new char[8];
+
+    FxmlTokenizer(CharSequence in) {
+        this(in, 0);
+    }
+
+    FxmlTokenizer(CharSequence in, int from) {
+        this.in = in;
+        this.length = in.length();
+        this.pos = from;
+    }
+
+    CharSequence input() {
+        return in;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    /** Repositionne la lecture, par exemple après avoir consommé un sous-arbre à la main. */
+    void seek(int position) {
+        this.pos = Math.min(position, length);
+    }
+
+    int next() {
+        attrCount = 0;
+        selfClosing = false;
+        start = pos;
+        if (pos >= length) {
+            end = pos;
+            return EOF;
+        }
+        if (in.charAt(pos) != '<') {
+            int lt = indexOf('<', pos);
+            pos = end = lt < 0 ? length : lt;
+            return TEXT;
+        }
+        if (startsWith(pos, "<!--")) {
+            return finish(COMMENT, "-->", pos + 4);
+        }
+        if (startsWith(pos, "<![CDATA[")) {
+            return finish(CDATA, "]]>", pos + 9);
+        }
+        if (startsWith(pos, "<?")) {
+            return finish(PI, "?>", pos + 2);
+        }
+        if (startsWith(pos, "<!")) {
+            return finish(DOCTYPE, ">", pos + 2);
+        }
+        if (pos + 1 < length && in.charAt(pos + 1) == '/') {
+            return endTag();
+        }
+        return startTag();
+    }
+
+    private int finish(int type, String terminator, int from) {
+        int idx = indexOf(terminator, from);
+        pos = end = idx < 0 ? length : idx + terminator.length();
+        return type;
+    }
+
+    private int endTag() {
+        int p = pos + 2;
+        nameStart = p;
+        while (p < length && !isWhitespace(in.charAt(p)) && in.charAt(p) != '>') p++;
+        nameEnd = p;
+        if (nameEnd == nameStart) return text(pos + 2);
+        while (p < length && isWhitespace(in.charAt(p))) p++;
+        if (p >= length || in.charAt(p) != '>') return text(p);
+        pos = end = p + 1;
+        return END_TAG;
+    }
+
+    private int startTag() {
+        int p = pos + 1;
+        nameStart = p;
+        while (p < length && isNameChar(in.charAt(p))) p++;
+        nameEnd = p;
+        if (nameEnd == nameStart) return text(pos + 1);
+        while (true) {
+            int ws = p;
+            while (p < length && isWhitespace(in.charAt(p))) p++;
+            if (p >= length) return text(p);
+            char c = in.charAt(p);
+            if (c == '>') {
+                tailStart = ws;
+                pos = end = p + 1;
+                return START_TAG;
+            }
+            if (c == '/' && p + 1 < length && in.charAt(p + 1) == '>') {
+                tailStart = ws;
+                selfClosing = true;
+                pos = end = p + 2;
+                return START_TAG;
+            }
+            // Attribut: nom [= valeur]
+            int ns = p;
+            while (p < length && isNameChar(in.charAt(p)) && in.charAt(p) != '=') p++;
+            if (p == ns) p++; // caractère inattendu: on l'absorbe pour garantir la progression
+            int ne = p;
+            int vs = p, ve = p;
+            char quote = 0;
+            int q = p;
+            while (q < length && isWhitespace(in.charAt(q))) q++;
+            if (q < length && in.charAt(q) == '=') {
+                q++;
+                while (q < length && isWhitespace(in.charAt(q))) q++;
+                if (q < length && (in.charAt(q) == '"' || in.charAt(q) == '\'')) {
+                    quote = in.charAt(q);
+                    int close = indexOf(quote, q + 1);
+                    if (close < 0) return text(length);
+                    vs = q + 1;
+                    ve = close;
+                    p = close + 1;
+                } else {
+                    vs = q;
+                    while (q < length && !isWhitespace(in.charAt(q)) && in.charAt(q) != '>') q++;
+                    ve = q;
+                    p = q;
+                }
+            }
+            addAttribute(ws, ns, ne, vs, ve, p, quote);
+        }
+    }
+
+    private int text(int until) {
+        pos = end = Math.max(until, start + 1);
+        attrCount = 0;
+        return TEXT;
+    }
+
+    private void addAttribute(int ws, int ns, int ne, int vs, int ve, int e, char quote) {
+        if (attrCount == attrNameStart.length) {
+            int n = attrCount * 2;
+            attrWsStart = java.util.Arrays.copyOf(attrWsStart, n);
+            attrNameStart = java.util.Arrays.copyOf(attrNameStart, n);
+            attrNameEnd = java.util.Arrays.copyOf(attrNameEnd, n);
+            attrValueStart = java.util.Arrays.copyOf(attrValueStart, n);
+            attrValueEnd = java.util.Arrays.copyOf(attrValueEnd, n);
+            attrEnd = java.util.Arrays.copyOf(attrEnd, n);
+            attrQuote = java.util.Arrays.copyOf(attrQuote, n);
+        }
+        int i = attrCount++;
+        attrWsStart[i] = ws;
+        attrNameStart[i] = ns;
+        attrNameEnd[i] = ne;
+        attrValueStart[i] = vs;
+        attrValueEnd[i] = ve;
+        attrEnd[i] = e;
+        attrQuote[i] = quote;
+    }
+
+    // --- Aides de comparaison sans allocation ---
+
+    boolean nameIs(String name) {
+        return regionEqualsIgnoreCase(in, nameStart, nameEnd, name);
+    }
+
+    /** Nom de la forme [préfixe.]suffixe, comparaison insensible à la casse sur le suffixe. */
+    boolean nameEndsWithProperty(String property) {
+        int len = nameEnd - nameStart;
+        int plen = property.length();
+        if (len == plen) return nameIs(property);
+        return len > plen
+                && in.charAt(nameEnd - plen - 1) == '.'
+                && regionEqualsIgnoreCase(in, nameEnd - plen, nameEnd, property);
+    }
+
+    boolean attrNameIs(int i, String name) {
+        return regionEqualsIgnoreCase(in, attrNameStart[i], attrNameEnd[i], name);
+    }
+
+    int findAttribute(String name) {
+        for (int i = 0; i < attrCount; i++) {
+            if (attrNameIs(i, name)) return i;
+        }
+        return -1;
+    }
+
+    String attrValue(int i) {
+        return in.subSequence(attrValueStart[i], attrValueEnd[i]).toString();
+    }
+
+    String name() {
+        return in.subSequence(nameStart, nameEnd).toString();
+    }
+
+    boolean startsWith(int at, String prefix) {
+        int n = prefix.length();
+        if (at + n > length) return false;
+        for (int i = 0; i < n; i++) {
+            if (in.charAt(at + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    int indexOf(char c, int from) {
+        for (int i = from; i < length; i++) {
+            if (in.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    int indexOf(String s, int from) {
+        char first = s.charAt(0);
+        for (int i = from; i <= length - s.length(); i++) {
+            if (in.charAt(i) == first && startsWith(i, s)) return i;
+        }
+        return -1;
+    }
+
+    /** Recherche insensible à la casse, utilisée pour les balises fermantes (ex. </fx:script>). */
+    int indexOfIgnoreCase(String s, int from) {
+        int n = s.length();
+        for (int i = from; i <= length - n; i++) {
+            if (regionEqualsIgnoreCase(in, i, i + n, s)) return i;
+        }
+        return -1;
+    }
+
+    static boolean regionEqualsIgnoreCase(CharSequence s, int start, int end, String lit) {
+        if (end - start != lit.length()) return false;
+        for (int i = 0; i < lit.length(); i++) {
+            char a = s.charAt(start + i);
+            char b = lit.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) return false;
+        }
+        return true;
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+
+    private static boolean isNameChar(char c) {
+        return !isWhitespace(c) && c != '>' && c != '/' && c != '<' && c != '"' && c != '\'';
+    }
+}
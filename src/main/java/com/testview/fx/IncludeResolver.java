@@ -0,0 +1,151 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fournit les fragments inclus lors de l'assemblage d'un document.
+ *
+ * Avant l'assemblage, tout le graphe d'includes atteignable depuis la racine est
+ * découvert et chargé en parallèle: chaque fragment récupéré planifie aussitôt la
+ * récupération de ses propres includes, sans jamais attendre une autre tâche. Les
+ * lectures bloquantes (partages réseau, URLs jar:) se recouvrent donc au lieu de
+ * s'enchaîner. L'assemblage, lui, reste séquentiel et dans l'ordre du document;
+ * les cycles et les erreurs y sont signalés exactement comme avant.
+ *
+ * Le parallélisme est plafonné par la propriété système testview.includes.parallelism
+ * (par défaut 2 × nombre de cœurs, au moins 16: le travail est dominé par les E/S).
+ * La valeur 1 désactive le préchargement: les fragments sont alors lus un à un,
+ * au fil de l'assemblage.
+ *
+ * L'attente du préchargement est interruptible (annulation d'un aperçu): le thread
+ * appelant garde son indicateur d'interruption, plus aucune lecture n'est planifiée
+ * (celles déjà commencées vont à leur terme, en arrière-plan) et une
+ * CancellationException remonte, comme pour une tâche annulée entre deux étapes.
+ */
+final class IncludeResolver {
+
+    static final int PARALLELISM = Math.max(1, Integer.getInteger("testview.includes.parallelism",
+            Math.max(16, 2 * Runtime.getRuntime().availableProcessors())));
+
+    private static final class PoolHolder {
+        // Pool dédié: les tâches font des E/S bloquantes, on ne veut pas affamer le pool commun
+        static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("fxml-include-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+    }
+
+    /** Résultat d'une récupération: fragment ou erreur d'E/S à restituer lors de l'assemblage. */
+    private record Fetched(FxmlFragment fragment, IOException error) {}
+
+    private final FragmentCache cache;
+    private final Map<String, Fetched> prefetched;
+
+    private IncludeResolver(FragmentCache cache, Map<String, Fetched> prefetched) {
+        this.cache = cache;
+        this.prefetched = prefetched;
+    }
+
+    /** Résolution séquentielle, fragment par fragment, au fil de l'assemblage. */
+    static IncludeResolver sequential(FragmentCache cache) {
+        return new IncludeResolver(cache, Map.of());
+    }
+
+    /** Résolution selon la configuration: préchargement concurrent si la racine a des includes. */
+    static IncludeResolver forRoot(FxmlFragment root, FragmentCache cache) {
+        return forSources(root.baseUrl, root.includeSource, cache);
+    }
+
+    /** Comme {@link #forRoot}, pour une racine dont on ne connaît que les sources d'include (lecture en flux). */
+    static IncludeResolver forSources(URL baseUrl, String[] sources, FragmentCache cache) {
+        if (PARALLELISM <= 1 || sources.length == 0) return sequential(cache);
+        return concurrent(baseUrl, sources, cache, PoolHolder.POOL);
+    }
+
+    /** Découvre et charge en parallèle tous les fragments atteignables depuis root. */
+    static IncludeResolver concurrent(FxmlFragment root, FragmentCache cache, ForkJoinPool pool) {
+        return concurrent(root.baseUrl, root.includeSource, cache, pool);
+    }
+
+    private static IncludeResolver concurrent(URL rootBase, String[] rootSources, FragmentCache cache, ForkJoinPool pool) {
+        Map<String, Fetched> results = new ConcurrentHashMap<>();
+        Map<String, Boolean> claimed = new ConcurrentHashMap<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        new Object() {
+            void schedule(URL baseUrl, String[] sources) {
+                for (String source : sources) {
+                    if (cancelled.get()) return;
+                    URL url;
+                    try {
+                        url = new URL(baseUrl, source);
+                    } catch (MalformedURLException e) {
+                        continue; // signalé lors de l'assemblage
+                    }
+                    String key = url.toString();
+                    if (claimed.putIfAbsent(key, Boolean.TRUE) != null) continue;
+                    pending.incrementAndGet();
+                    pool.execute(() -> {
+                        try {
+                            if (cancelled.get()) return;
+                            FxmlFragment child = cache.get(url);
+                            results.put(key, new Fetched(child, null));
+                            schedule(child.baseUrl, child.includeSource);
+                        } catch (IOException e) {
+                            results.put(key, new Fetched(null, e));
+                        } catch (RuntimeException e) {
+                            // L'assemblage retentera la lecture et signalera l'erreur à sa place
+                        } finally {
+                            arrive();
+                        }
+                    });
+                }
+            }
+
+            void arrive() {
+                if (pending.decrementAndGet() == 0) done.complete(null);
+            }
+
+            void start() {
+                try {
+                    schedule(rootBase, rootSources);
+                } finally {
+                    arrive();
+                }
+            }
+        }.start();
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            CancellationException cancellation = new CancellationException("Préchargement des includes interrompu");
+            cancellation.initCause(e);
+            throw cancellation;
+        } catch (ExecutionException e) {
+            // done n'est complété qu'avec null
+            throw new IllegalStateException(e.getCause());
+        }
+        return new IncludeResolver(cache, results);
+    }
+
+    FxmlFragment fetch(URL url) throws IOException {
+        Fetched fetched = prefetched.get(url.toString());
+        if (fetched == null) return cache.get(url);
+        if (fetched.error() != null) throw fetched.error();
+        return fetched.fragment();
+    }
+}
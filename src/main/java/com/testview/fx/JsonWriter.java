@@ -0,0 +1,133 @@
+package com.testview.fx;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+
+/**
+ * Écriture JSON minimale (rapports, exports), sans dépendance externe.
+ *
+ * Écriture en flux dans un StringBuilder, indentée de deux espaces. Les virgules
+ * sont gérées par la pile des conteneurs ouverts; l'appelant se contente d'enchaîner
+ * name()/value() dans l'ordre.
+ */
+final class JsonWriter {
+
+    private final StringBuilder out;
+    // true tant que le conteneur courant n'a encore aucun membre
+    private final Deque<Boolean> empty = new ArrayDeque<>();
+    private boolean afterName;
+
+    JsonWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() {
+        return open('{');
+    }
+
+    JsonWriter endObject() {
+        return close('}');
+    }
+
+    JsonWriter beginArray() {
+        return open('[');
+    }
+
+    JsonWriter endArray() {
+        return close(']');
+    }
+
+    JsonWriter name(String name) {
+        separator();
+        string(name);
+        out.append(": ");
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    JsonWriter value(double value) {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(String.format(Locale.ROOT, "%.3f", value));
+        }
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    private JsonWriter open(char c) {
+        separator();
+        out.append(c);
+        empty.push(Boolean.TRUE);
+        return this;
+    }
+
+    private JsonWriter close(char c) {
+        boolean wasEmpty = empty.pop();
+        if (!wasEmpty) newline();
+        out.append(c);
+        return this;
+    }
+
+    private void separator() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (empty.isEmpty()) return;
+        if (!empty.peek()) out.append(',');
+        empty.pop();
+        empty.push(Boolean.FALSE);
+        newline();
+    }
+
+    private void newline() {
+        out.append('\n');
+        for (int i = 0; i < empty.size(); i++) out.append("  ");
+    }
+
+    private void string(CharSequence s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
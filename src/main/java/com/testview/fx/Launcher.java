@@ -1,11 +1,15 @@
 package com.testview.fx;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.ToolBar;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
@@ -19,6 +23,9 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Lanceur minimal pour afficher un fichier FXML en ignorant contrôleurs et handlers.
@@ -27,117 +34,431 @@ import java.nio.file.Path;
  *  - mvn javafx:run -Dargs="chemin/vers/mon.fxml"
  *  - ou exécuter la classe en passant le chemin du FXML en premier argument.
  *  - si aucun argument n'est fourni, un exemple embarqué est utilisé.
+ *  - --watch active le rechargement à chaud des aperçus ouverts.
+ *  - --compare a.fxml b.fxml ouvre la comparaison des deux variantes (voir {@link CompareWindow}).
+ *  - --lazy active le chargement différé des onglets et volets repliés (voir {@link LazyFxml}).
+ *  - --profile ouvre les aperçus avec le profil layout/CSS (voir {@link LayoutProfiler}).
+ *  - --startup-probe imprime les temps de démarrage (JSON) une fois l'accueil affiché, puis quitte.
  */
 public class Launcher extends Application {
 
+    // Chargements en arrière-plan: plusieurs aperçus peuvent se préparer en même temps
+    private static final AtomicInteger LOADER_THREADS = new AtomicInteger();
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "fxml-load-" + LOADER_THREADS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private BorderPane wrapper;
+    private Label status;
+    // Un élément par chargement en cours, pour pouvoir l'annuler individuellement
+    private final MenuButton cancelMenu = new MenuButton("Annuler");
+    // Rechargement à chaud des aperçus ouverts (et de ceux à venir)
+    private final CheckBox liveReload = new CheckBox("Rechargement auto");
+    // Chargement différé des onglets et volets repliés (aperçus à venir et rechargements)
+    private final CheckBox lazyLoad = new CheckBox("Chargement différé");
+    // Profil layout/CSS des aperçus ouverts (et de ceux à venir)
+    private final CheckBox profile = new CheckBox("Profil layout");
+    private final java.util.List<PreviewWindow> previews = new java.util.ArrayList<>();
+    private FileChooser chooser;
+    // Aboutit quand l'exemple embarqué est affiché (ou en erreur); utilisé par l'entraînement
+    final java.util.concurrent.CompletableFuture<Parent> example = new java.util.concurrent.CompletableFuture<>();
+    private File initialDirectory;
+
     @Override
     public void start(Stage stage) {
+        start(stage, getParameters().getRaw());
+    }
+
+    /**
+     * Affiche la fenêtre d'accueil le plus tôt possible: tout ce qui n'est pas
+     * nécessaire à la première image (exemple embarqué, sélecteur de fichiers) est
+     * fait après, en arrière-plan ou à la demande.
+     */
+    void start(Stage stage, java.util.List<String> args) {
+        Startup.mark(Startup.Mark.TOOLKIT);
         // Wrapper principal avec barre d'outils et zone d'aperçu au centre
-        BorderPane wrapper = new BorderPane();
+        wrapper = new BorderPane();
 
-        Label status = new Label();
+        status = new Label();
         Button browseBtn = new Button("Parcourir…");
-        ToolBar toolBar = new ToolBar(browseBtn, new Label("  "), status);
+        Button compareBtn = new Button("Comparer…");
+        Button metricsBtn = new Button("Métriques…");
+        cancelMenu.setDisable(true);
+        liveReload.selectedProperty().addListener((obs, was, on) -> previews.forEach(p -> p.setLiveReload(on)));
+        lazyLoad.selectedProperty().addListener((obs, was, on) -> previews.forEach(p -> p.setLazy(on)));
+        profile.selectedProperty().addListener((obs, was, on) -> previews.forEach(p -> p.setProfiling(on)));
+        ToolBar toolBar = new ToolBar(browseBtn, compareBtn, cancelMenu, liveReload, lazyLoad, profile, metricsBtn,
+                new Label("  "), status);
         wrapper.setTop(toolBar);
 
-        // Gestion du bouton Parcourir
-        final FileChooser chooser = new FileChooser();
-        chooser.setTitle("Choisir un fichier FXML");
-        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Fichiers FXML", "*.fxml"));
-
+        // Gestion du bouton Parcourir (sélecteur créé au premier clic)
         browseBtn.setOnAction(e -> {
+            File file = chooser().showOpenDialog(stage);
+            if (file == null) return;
+            openFileInNewWindow(stage, file.toPath());
+            // Mémoriser le dossier pour les ouvertures suivantes
+            chooser.setInitialDirectory(file.getParentFile());
+        });
+
+        // Comparaison de deux variantes: deux fichiers choisis d'un coup
+        compareBtn.setOnAction(e -> {
+            java.util.List<File> files = chooser().showOpenMultipleDialog(stage);
+            if (files == null) return;
+            if (files.size() != 2) {
+                status.setText("Comparaison: choisir exactement deux fichiers (" + files.size() + " choisis)");
+                return;
+            }
+            openCompareWindow(stage, files.get(0).toPath(), files.get(1).toPath());
+            chooser.setInitialDirectory(files.get(0).getParentFile());
+        });
+
+        // Export JSON des mesures de chargement (tableaux de bord)
+        metricsBtn.setOnAction(e -> {
+            FileChooser saver = new FileChooser();
+            saver.setTitle("Exporter les métriques");
+            saver.setInitialFileName("metriques-fxml.json");
+            saver.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json"));
+            File target = saver.showSaveDialog(stage);
+            if (target == null) return;
             try {
-                File file = chooser.showOpenDialog(stage);
-                if (file == null) return;
-                Path path = file.toPath();
-                openFileInNewWindow(status, stage, path);
-                // Mémoriser le dossier pour les ouvertures suivantes
-                chooser.setInitialDirectory(file.getParentFile());
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                wrapper.setCenter(new Label("Erreur de chargement FXML: \n" + ex.getMessage()));
-                status.setText("Erreur");
-                stage.setTitle("Erreur FXML");
+                MetricsRegistry.shared().export(target.toPath());
+                status.setText("Métriques exportées: " + target.getName());
+            } catch (IOException ex) {
+                showError(stage, ex);
             }
         });
 
-        // Chargement initial: argument si fourni, sinon l'exemple embarqué
+        // Chargement initial: argument si fourni, sinon l'exemple embarqué.
+        // --watch active d'emblée le rechargement à chaud, --lazy le chargement différé,
+        // --profile le profil layout/CSS;
+        // --compare a b ouvre la comparaison; --startup-probe imprime les temps de
+        // démarrage puis quitte (voir Training).
         String fxmlArg = null;
-        if (!getParameters().getRaw().isEmpty()) {
-            fxmlArg = getParameters().getRaw().get(0);
-        }
-        try {
-            if (fxmlArg == null || fxmlArg.isBlank()) {
-                try (InputStream in = getClass().getResourceAsStream("/test.fxml")) {
-                    if (in == null) throw new IOException("Ressource test.fxml introuvable");
-                    String xml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
-                    Parent content = loadSanitized(xml, getClass().getResource("/"));
-                    wrapper.setCenter(content);
-                    status.setText("Exemple embarqué chargé");
-                    stage.setTitle("Aperçu FXML (exemple embarqué)");
-                }
-            } else {
-                Path path = Path.of(fxmlArg);
-                openFileInNewWindow(status, stage, path);
-                chooser.setInitialDirectory(path.toFile().getParentFile());
+        Path[] compare = null;
+        boolean probe = false;
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if ("--watch".equals(arg)) {
+                liveReload.setSelected(true);
+            } else if ("--compare".equals(arg) && i + 2 < args.size()) {
+                compare = new Path[] {Path.of(args.get(++i)), Path.of(args.get(++i))};
+            } else if ("--lazy".equals(arg)) {
+                lazyLoad.setSelected(true);
+            } else if ("--profile".equals(arg)) {
+                profile.setSelected(true);
+            } else if (Training.PROBE.equals(arg)) {
+                probe = true;
+            } else if (fxmlArg == null) {
+                fxmlArg = arg;
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            wrapper.setCenter(new Label("Erreur de chargement FXML: \n" + ex.getMessage()));
-            status.setText("Erreur");
-            stage.setTitle("Erreur FXML");
         }
+        boolean example = fxmlArg == null || fxmlArg.isBlank();
 
         Scene scene = new Scene(wrapper);
-        stage.setTitle(stage.getTitle() == null ? "Aperçu FXML" : stage.getTitle());
+        stage.setTitle(example ? "Aperçu FXML (exemple embarqué)" : "Aperçu FXML");
         stage.setScene(scene);
+        boolean exitAfterExample = probe && example;
+        boolean exitAfterFirstFrame = probe && !example;
+        Startup.markAfterPulse(scene, Startup.Mark.FIRST_FRAME, () -> {
+            if (status.getText().isEmpty()) status.setText(Startup.summary());
+            if (exitAfterFirstFrame) reportStartupAndExit();
+        });
         stage.show();
+        Startup.mark(Startup.Mark.SHOWN);
+
+        if (example) {
+            status.setText("Chargement de l'exemple…");
+            loadExample(stage, exitAfterExample);
+        } else {
+            Path path = Path.of(fxmlArg).toAbsolutePath();
+            initialDirectory = path.toFile().getParentFile();
+            openFileInNewWindow(stage, path);
+        }
+        if (compare != null) {
+            initialDirectory = compare[0].toAbsolutePath().toFile().getParentFile();
+            openCompareWindow(stage, compare[0].toAbsolutePath(), compare[1].toAbsolutePath());
+        }
     }
 
-    private static URL toBaseUrl(File file) throws MalformedURLException {
+    /** Exemple embarqué, préparé hors du thread JavaFX une fois la fenêtre affichée. */
+    private void loadExample(Stage stage, boolean thenExit) {
+        LoadMetrics metrics = new LoadMetrics("test.fxml (embarqué)");
+        javafx.concurrent.Task<Parent> task = new javafx.concurrent.Task<>() {
+            @Override
+            protected Parent call() throws Exception {
+                String xml;
+                try (InputStream in = Launcher.class.getResourceAsStream("/test.fxml")) {
+                    if (in == null) throw new IOException("Ressource test.fxml introuvable");
+                    xml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                URL base = Launcher.class.getResource("/");
+                FxmlSanitizer.Prepared prepared = FxmlSanitizer.prepare(xml, base, null, metrics);
+                try {
+                    return loadPrepared(prepared, base, metrics);
+                } catch (IOException | RuntimeException e) {
+                    if (!PreviewLoadTask.requiresFxThread(e)) throw e;
+                    return PreviewLoadTask.onFxThread(() -> loadPrepared(prepared, base, metrics));
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            wrapper.setCenter(task.getValue());
+            example.complete(task.getValue());
+            // La fenêtre a été affichée vide: elle prend maintenant la taille de l'exemple
+            stage.sizeToScene();
+            stage.centerOnScreen();
+            Startup.markAfterPulse(stage.getScene(), Startup.Mark.EXAMPLE, () -> {
+                status.setText("Exemple embarqué chargé — " + metrics.summary() + " · " + Startup.summary());
+                if (thenExit) reportStartupAndExit();
+            });
+        });
+        task.setOnFailed(e -> {
+            showError(stage, task.getException());
+            example.completeExceptionally(task.getException());
+        });
+        loadExecutor.execute(task);
+    }
+
+    private FileChooser chooser() {
+        if (chooser == null) {
+            chooser = new FileChooser();
+            chooser.setTitle("Choisir un fichier FXML");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Fichiers FXML", "*.fxml"));
+            if (initialDirectory != null) chooser.setInitialDirectory(initialDirectory);
+        }
+        return chooser;
+    }
+
+    /** --startup-probe: temps de démarrage en JSON sur la sortie standard, puis fin du processus. */
+    private static void reportStartupAndExit() {
+        System.out.print(Startup.toJson());
+        System.out.flush();
+        Platform.exit();
+    }
+
+    @Override
+    public void stop() {
+        loadExecutor.shutdownNow();
+    }
+
+    static URL toBaseUrl(File file) throws MalformedURLException {
         // Base URL pour résoudre les chemins relatifs (fx:include, images...).
-        return file.getParentFile().toURI().toURL();
+        return file.getAbsoluteFile().getParentFile().toURI().toURL();
+    }
+
+    static Parent loadSanitized(String rawXml, URL baseUrl) throws IOException {
+        return loadSanitized(rawXml, baseUrl, null);
+    }
+
+    static Parent loadSanitized(String rawXml, URL baseUrl, URL documentUrl) throws IOException {
+        return loadSanitized(rawXml, baseUrl, documentUrl,
+                new LoadMetrics(String.valueOf(documentUrl != null ? documentUrl : baseUrl)));
     }
 
-    private Parent loadSanitized(String rawXml, URL baseUrl) throws IOException {
-        String sanitized = FxmlSanitizer.sanitizeInlineIncludes(rawXml, baseUrl);
+    static Parent loadSanitized(String rawXml, URL baseUrl, URL documentUrl, LoadMetrics metrics) throws IOException {
+        // Sanitization, inlining des includes, collecte des URLs de styles et
+        // suppression des blocs <stylesheets> en une seule passe
+        return loadPrepared(FxmlSanitizer.prepare(rawXml, baseUrl, documentUrl, metrics), baseUrl, metrics);
+    }
 
-        // Récupérer les URLs de styles puis supprimer les blocs <stylesheets> du FXML
-        java.util.List<String> styles = FxmlSanitizer.extractStylesheetUrls(sanitized);
-        String withoutStylesheets = FxmlSanitizer.stripStylesheets(sanitized);
+    static Parent loadPrepared(FxmlSanitizer.Prepared prepared, URL baseUrl) throws IOException {
+        return loadPrepared(prepared, baseUrl, new LoadMetrics(String.valueOf(baseUrl)));
+    }
 
+    /**
+     * Construit le graphe de nœuds d'un document déjà préparé. Peut être appelé hors
+     * du thread JavaFX tant que le résultat n'est pas encore attaché à une scène.
+     * La durée de FXMLLoader.load et le nombre de nœuds sont consignés dans metrics.
+     */
+    static Parent loadPrepared(FxmlSanitizer.Prepared prepared, URL baseUrl, LoadMetrics metrics) throws IOException {
+        java.util.List<String> styles = prepared.stylesheets();
+        String withoutStylesheets = prepared.fxml();
+
+        LoadEvents.FxmlLoad event = new LoadEvents.FxmlLoad();
+        event.begin();
+        long start = System.nanoTime();
+        Parent root;
+        try (var in = new java.io.ByteArrayInputStream(withoutStylesheets.getBytes(StandardCharsets.UTF_8))) {
+            root = load(in, baseUrl);
+        }
+        return completed(root, styles, System.nanoTime() - start, metrics, event);
+    }
+
+    /**
+     * Variante en flux: FXMLLoader lit directement la sortie de la réécriture
+     * (voir {@link SanitizingInputStream}), le document nettoyé n'est jamais
+     * matérialisé. Les stylesheets sont ajoutées une fois le flux entièrement lu.
+     */
+    static Parent loadStreaming(SanitizingInputStream in, URL baseUrl, LoadMetrics metrics) throws IOException {
+        LoadEvents.FxmlLoad event = new LoadEvents.FxmlLoad();
+        event.begin();
+        long start = System.nanoTime();
+        Parent root;
+        try (in) {
+            root = load(in, baseUrl);
+        }
+        // Le nettoyage et les includes s'exécutent pendant la lecture: on ne garde que FXMLLoader
+        long elapsed = System.nanoTime() - start - in.processingNanos();
+        return completed(root, in.stylesheets(), elapsed, metrics, event);
+    }
+
+    /**
+     * Construit le graphe de nœuds d'un aperçu trouvé dans {@link PreviewCache}: le
+     * document y est déjà nettoyé et assemblé, FXMLLoader le lit directement.
+     */
+    static Parent loadCached(PreviewCache.Entry entry, URL baseUrl, LoadMetrics metrics) throws IOException {
+        metrics.outputChars = entry.fxml().remaining();
+        metrics.distinctIncludes = entry.includes().size();
+        metrics.stylesheets = entry.stylesheets().size();
+        LoadEvents.FxmlLoad event = new LoadEvents.FxmlLoad();
+        event.begin();
+        long start = System.nanoTime();
+        Parent root;
+        try (InputStream in = entry.open()) {
+            root = load(in, baseUrl);
+        }
+        return completed(root, entry.stylesheets(), System.nanoTime() - start, metrics, event);
+    }
+
+    /**
+     * Variante différée: les sous-arbres rarement visibles d'emblée (onglets, volets
+     * repliés) ne sont construits qu'à leur premier affichage (voir {@link LazyFxml}).
+     * Le découpage est compté dans l'étape LOAD.
+     */
+    static Parent loadLazy(FxmlSanitizer.Prepared prepared, URL baseUrl, LoadMetrics metrics) throws IOException {
+        LoadEvents.FxmlLoad event = new LoadEvents.FxmlLoad();
+        event.begin();
+        long start = System.nanoTime();
+        LazyFxml lazy = LazyFxml.split(prepared.fxml(), baseUrl, metrics.document);
+        metrics.deferred = lazy.deferred();
+        Parent root;
+        try (var in = new java.io.ByteArrayInputStream(lazy.fxml.getBytes(StandardCharsets.UTF_8))) {
+            root = load(in, baseUrl, lazy);
+        }
+        return completed(root, prepared.stylesheets(), System.nanoTime() - start, metrics, event);
+    }
+
+    private static Parent load(InputStream in, URL baseUrl) throws IOException {
+        return load(in, baseUrl, null);
+    }
+
+    /** lazy: fragments différés du document, exposés aux {@link LazyPane} via le namespace (peut être null). */
+    static <T> T load(InputStream in, URL baseUrl, LazyFxml lazy) throws IOException {
         FXMLLoader loader = new FXMLLoader();
         loader.setLocation(baseUrl);
         // Aucun contrôleur: toute tentative est supprimée par sanitize
         // Fabrique d'emplacements de ressources pour éviter les ResourceBundle manquants
         loader.setResources(null);
-        Parent root;
-        try (var in = new java.io.ByteArrayInputStream(withoutStylesheets.getBytes(StandardCharsets.UTF_8))) {
-            root = loader.load(in);
+        // Images partagées entre aperçus (voir AssetCache)
+        loader.setBuilderFactory(AssetCache.shared().builderFactory());
+        if (lazy != null) {
+            // Un fragment voit les variables déjà chargées: fx:define, $id, fx:reference
+            loader.getNamespace().putAll(lazy.namespace);
+            loader.getNamespace().put(LazyFxml.NAMESPACE_KEY, lazy);
         }
+        T root = loader.load(in);
+        if (lazy != null) lazy.namespace.putAll(loader.getNamespace());
+        return root;
+    }
+
+    private static Parent completed(Parent root, java.util.List<String> styles, long loadNanos,
+                                    LoadMetrics metrics, LoadEvents.FxmlLoad event) {
         if (root != null && styles != null && !styles.isEmpty()) {
-            root.getStylesheets().addAll(styles);
+            // URLs canoniques: une seule analyse par feuille pour toutes les fenêtres
+            root.getStylesheets().addAll(AssetCache.stylesheets(styles));
         }
+        metrics.stage(LoadMetrics.Stage.LOAD, loadNanos);
+        metrics.nodes = countNodes(root);
+        MetricsRegistry.shared().completed(metrics);
+        event.document = metrics.document;
+        event.nodes = metrics.nodes;
+        event.commit();
         return root;
     }
 
+    /** Nombre de nœuds du graphe (racine comprise), parcours itératif. */
+    static int countNodes(javafx.scene.Node root) {
+        if (root == null) return 0;
+        int count = 0;
+        java.util.ArrayDeque<javafx.scene.Node> stack = new java.util.ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            javafx.scene.Node node = stack.pop();
+            count++;
+            if (node instanceof Parent parent) {
+                for (javafx.scene.Node child : parent.getChildrenUnmodifiable()) stack.push(child);
+            }
+        }
+        return count;
+    }
+
     // Le point d'entrée se trouve dans AppMain pour éviter l'erreur
     // "JavaFX runtime components are missing" dans certains IDE/JDK.
 
-    private void openFileInNewWindow(Label status, Stage owner, Path path) throws IOException {
-        if (!Files.exists(path)) {
-            throw new IOException("Fichier introuvable: " + path.toAbsolutePath());
-        }
-        String xml = Files.readString(path, StandardCharsets.UTF_8);
-        URL baseUrl = toBaseUrl(path.toFile());
-        Parent content = loadSanitized(xml, baseUrl);
+    /**
+     * Lance le chargement en arrière-plan; la fenêtre d'aperçu s'ouvre quand il se termine.
+     * L'avancement s'affiche dans la barre d'état et le chargement peut être annulé
+     * depuis le menu « Annuler ». Le résultat aboutit quand la fenêtre est affichée.
+     */
+    java.util.concurrent.CompletableFuture<PreviewWindow> openFileInNewWindow(Stage owner, Path path) {
+        java.util.concurrent.CompletableFuture<PreviewWindow> opened = new java.util.concurrent.CompletableFuture<>();
+        PreviewLoadTask task = new PreviewLoadTask(path, lazyLoad.isSelected());
+        String name = task.getTitle();
+
+        MenuItem cancelItem = new MenuItem(name);
+        cancelItem.setOnAction(e -> task.cancel(true));
+        cancelMenu.getItems().add(cancelItem);
+        cancelMenu.setDisable(false);
+
+        task.messageProperty().addListener((obs, old, msg) -> {
+            int step = (int) Math.max(0, Math.round(task.getProgress() * PreviewLoadTask.STAGES));
+            status.setText(name + " — " + msg + " (" + step + "/" + PreviewLoadTask.STAGES + ")");
+        });
+        task.runningProperty().addListener((obs, was, running) -> {
+            if (!running) {
+                cancelMenu.getItems().remove(cancelItem);
+                cancelMenu.setDisable(cancelMenu.getItems().isEmpty());
+            }
+        });
+        task.setOnSucceeded(e -> {
+            PreviewWindow preview = new PreviewWindow(owner, path, task.getValue(), loadExecutor, status::setText);
+            previews.add(preview);
+            preview.stage().addEventHandler(javafx.stage.WindowEvent.WINDOW_HIDDEN, ev -> previews.remove(preview));
+            preview.setLiveReload(liveReload.isSelected());
+            preview.setLazy(lazyLoad.isSelected());
+            preview.show();
+            preview.setProfiling(profile.isSelected());
+
+            status.setText("Ouvert dans nouvelle fenêtre: " + name + " — " + preview.metrics().summary());
+            opened.complete(preview);
+        });
+        task.setOnCancelled(e -> {
+            status.setText("Chargement annulé: " + name);
+            opened.cancel(false);
+        });
+        task.setOnFailed(e -> {
+            showError(owner, task.getException());
+            opened.completeExceptionally(task.getException());
+        });
 
-        Stage preview = new Stage();
-        preview.setTitle("Aperçu FXML - " + path.getFileName());
-        preview.initOwner(owner);
-        preview.setScene(new Scene(content));
-        preview.show();
+        loadExecutor.execute(task);
+        return opened;
+    }
+
+    /** Ouvre la comparaison de deux variantes (rendu et différence en arrière-plan). */
+    CompareWindow openCompareWindow(Stage owner, Path left, Path right) {
+        CompareWindow compare = new CompareWindow(owner, left, right, loadExecutor, status::setText);
+        compare.show();
+        return compare;
+    }
 
-        status.setText("Ouvert dans nouvelle fenêtre: " + path.getFileName());
+    private void showError(Stage stage, Throwable ex) {
+        ex.printStackTrace();
+        wrapper.setCenter(new Label("Erreur de chargement FXML: \n" + ex.getMessage()));
+        status.setText("Erreur");
+        stage.setTitle("Erreur FXML");
     }
 }
@@ -0,0 +1,578 @@
+package com.testview.fx;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Profil du coût CSS et layout par sous-arbre d'un aperçu.
+ *
+ * Deux sources de mesure, cumulées tant que le profil est actif:
+ *  - chaque pulse: durée réelle de la passe CSS + layout de la scène (entre les
+ *    écouteurs de pulse avant et après layout); pour chaque conteneur, le nombre de
+ *    fois où il a dû être remis en page (relayouts, écouteur sur needsLayout);
+ *  - des mesures actives (au démarrage, puis au plus une par
+ *    testview.profiler.intervalMs, 1 s par défaut, quand un pulse a travaillé:
+ *    redimensionnement, défilement, volet qui s'ouvre...): chaque conteneur, du plus
+ *    profond à la racine, voit ses styles réappliqués puis tout son sous-arbre remis
+ *    en page; les deux durées sont celles du sous-arbre. Une mesure s'arrête après
+ *    testview.profiler.budgetMs (100 ms par défaut) et la suivante reprend où elle
+ *    s'est arrêtée. Chaque durée retenue est la plus petite mesurée (une pause GC ou
+ *    une compilation ne font qu'ajouter), la moyenne figure dans l'export. Le coût
+ *    propre d'un conteneur est celui de son sous-arbre moins celui de ses conteneurs
+ *    enfants.
+ *
+ * Affichage: carte de chaleur du coût propre par-dessus l'aperçu (la racine est
+ * placée, le temps du profil, dans une StackPane avec un calque transparent aux
+ * clics; elle garde sa classe de style root) et table triable des conteneurs.
+ * Export JSON pour comparer deux révisions d'un écran: chaque conteneur y est
+ * identifié par son chemin de types et d'indices (BorderPane/VBox[1]/HBox[0]).
+ *
+ * Désactivé, le profil ne coûte rien: aucun écouteur, racine inchangée.
+ *
+ * Toutes les méthodes s'exécutent sur le thread JavaFX.
+ */
+final class LayoutProfiler {
+
+    private static final long BUDGET_NANOS = Long.getLong("testview.profiler.budgetMs", 100) * 1_000_000;
+    private static final long INTERVAL_NANOS = Long.getLong("testview.profiler.intervalMs", 1000) * 1_000_000;
+    /** Durée de pulse à partir de laquelle le pulse a vraiment travaillé. */
+    private static final long BUSY_NANOS = 200_000;
+    /** Nombre maximal de zones sur la carte de chaleur. */
+    private static final int MAX_CELLS = 200;
+    /** Part du plus grand coût propre en deçà de laquelle une zone n'est pas affichée. */
+    private static final double MIN_HEAT = 0.05;
+
+    /** Mesures cumulées d'un conteneur (identifié par identité du nœud). */
+    private static final class Stats {
+        String path;
+        String label;
+        int level;
+        int nodes;
+        int depth;
+        long relayouts;
+        int samples;
+        long cssNanos;
+        long layoutNanos;
+        long cssMin = Long.MAX_VALUE;
+        long layoutMin = Long.MAX_VALUE;
+        final List<Stats> children = new ArrayList<>();
+        ChangeListener<Boolean> watcher;
+
+        double cssMs() {
+            return samples == 0 ? 0 : cssMin / 1e6;
+        }
+
+        double layoutMs() {
+            return samples == 0 ? 0 : layoutMin / 1e6;
+        }
+
+        double meanMs() {
+            return samples == 0 ? 0 : (cssNanos + layoutNanos) / 1e6 / samples;
+        }
+
+        double totalMs() {
+            return cssMs() + layoutMs();
+        }
+
+        double selfMs() {
+            double self = totalMs();
+            for (Stats child : children) self -= child.totalMs();
+            return Math.max(0, self);
+        }
+    }
+
+    /** Ligne de la table (instantané des mesures d'un conteneur). */
+    record Row(Parent node, String path, String label, int level, int nodes, int depth, long relayouts,
+               int samples, double cssMs, double layoutMs, double totalMs, double selfMs, double meanMs) {}
+
+    private final Scene scene;
+    private final Stage owner;
+    private final String document;
+    private final Consumer<String> status;
+    private final Runnable onClosed;
+
+    private final StackPane host = new StackPane();
+    private final Pane overlay = new Pane();
+    private final Rectangle selection = new Rectangle();
+    private Parent root;
+    private boolean addedRootClass;
+
+    // Conteneurs en ordre postfixe; first[i]: début du sous-arbre de order[i]
+    private Parent[] order = new Parent[0];
+    private int[] first = new int[0];
+    private List<Parent> preorder = List.of();
+    private Map<Parent, Stats> stats = new IdentityHashMap<>();
+    private int cursor;
+
+    private long pulses;
+    private long pulseNanos;
+    private long pulseMax;
+    private long pulseStart;
+    private int probes;
+    private long lastProbe;
+    private boolean probePending;
+    // Pulses provoqués par une mesure (remise en page des ancêtres): non comptés
+    private int skipPulses;
+    // Remises en page demandées par la mesure elle-même: non comptées
+    private boolean probing;
+
+    private final Runnable prePulse = this::beforeLayout;
+    private final Runnable postPulse = this::afterLayout;
+
+    private Stage window;
+    private TableView<Row> table;
+    private final ObservableList<Row> rows = FXCollections.observableArrayList();
+    private final Label summary = new Label();
+
+    LayoutProfiler(Stage owner, String document, Consumer<String> status, Runnable onClosed) {
+        this.owner = owner;
+        this.scene = owner.getScene();
+        this.document = document;
+        this.status = status;
+        this.onClosed = onClosed;
+        host.setAlignment(Pos.TOP_LEFT);
+        // La scène garde son remplissage là où la racine ne couvre pas tout
+        host.setStyle("-fx-background-color: transparent;");
+        overlay.setManaged(false);
+        overlay.setMouseTransparent(true);
+        selection.setFill(null);
+        selection.setStroke(Color.web("#2060ff"));
+        selection.setStrokeWidth(2);
+        selection.setVisible(false);
+    }
+
+    /** Place la racine sous le calque et commence à mesurer. */
+    void start(Parent root) {
+        scene.setRoot(host);
+        attach(root);
+        scene.addPreLayoutPulseListener(prePulse);
+        scene.addPostLayoutPulseListener(postPulse);
+    }
+
+    /** Rend la racine à la scène et retire les écouteurs. */
+    void stop() {
+        scene.removePreLayoutPulseListener(prePulse);
+        scene.removePostLayoutPulseListener(postPulse);
+        stats.forEach(LayoutProfiler::unwatch);
+        detach();
+        scene.setRoot(root);
+        if (window != null) window.hide();
+    }
+
+    /** Nouvelle racine (rechargement): les mesures repartent de zéro. */
+    void setRoot(Parent root) {
+        detach();
+        attach(root);
+        reset();
+    }
+
+    private void attach(Parent root) {
+        this.root = root;
+        host.getChildren().setAll(root, overlay);
+        overlay.getChildren().setAll(selection);
+        // Hors de la racine de la scène, le nœud perdrait la classe root des feuilles
+        addedRootClass = !root.getStyleClass().contains("root");
+        if (addedRootClass) root.getStyleClass().add(0, "root");
+        probePending = true;
+        root.requestLayout();
+    }
+
+    private void detach() {
+        host.getChildren().clear();
+        if (addedRootClass) root.getStyleClass().remove("root");
+        addedRootClass = false;
+    }
+
+    private void reset() {
+        stats.forEach(LayoutProfiler::unwatch);
+        stats = new IdentityHashMap<>();
+        order = new Parent[0];
+        first = new int[0];
+        preorder = List.of();
+        cursor = 0;
+        pulses = pulseNanos = pulseMax = 0;
+        probes = 0;
+        probePending = true;
+        refresh();
+    }
+
+    // --- Pulses ---
+
+    private void beforeLayout() {
+        pulseStart = System.nanoTime();
+    }
+
+    private void afterLayout() {
+        long elapsed = System.nanoTime() - pulseStart;
+        if (skipPulses > 0) {
+            skipPulses--;
+            return;
+        }
+        pulses++;
+        pulseNanos += elapsed;
+        pulseMax = Math.max(pulseMax, elapsed);
+        boolean busy = elapsed >= BUSY_NANOS;
+        if (probePending || busy && System.nanoTime() - lastProbe >= INTERVAL_NANOS) {
+            probe();
+        } else if (busy) {
+            // Positions à jour après un défilement ou un redimensionnement
+            updateHeatmap();
+        }
+    }
+
+    // --- Mesures ---
+
+    /**
+     * Mesure active: pour chaque conteneur (du plus profond à la racine, dans la
+     * limite du budget), réapplication des styles puis remise en page du sous-arbre.
+     */
+    void probe() {
+        probePending = false;
+        index();
+        int n = order.length;
+        if (n == 0) return;
+        if (cursor >= n) cursor = 0;
+        long deadline = System.nanoTime() + BUDGET_NANOS;
+        probing = true;
+        try {
+            for (int done = 0; done < n && System.nanoTime() - deadline < 0; done++) {
+                measure(cursor);
+                cursor = (cursor + 1) % n;
+            }
+        } finally {
+            probing = false;
+        }
+        probes++;
+        lastProbe = System.nanoTime();
+        skipPulses = 1;
+        refresh();
+    }
+
+    private void measure(int i) {
+        Parent node = order[i];
+        Stats s = stats.get(node);
+        if (node.getScene() == null || s == null) return;
+
+        long css = 0;
+        if (!node.styleProperty().isBound()) {
+            // Un style en ligne modifié force la réapplication des styles au sous-arbre
+            String style = node.getStyle();
+            node.setStyle(style == null ? " " : style + " ");
+            node.setStyle(style);
+            long t0 = System.nanoTime();
+            node.applyCss();
+            css = System.nanoTime() - t0;
+        }
+
+        for (int j = first[i]; j <= i; j++) order[j].requestLayout();
+        long t1 = System.nanoTime();
+        node.layout();
+        long layout = System.nanoTime() - t1;
+
+        s.cssNanos += css;
+        s.layoutNanos += layout;
+        s.cssMin = Math.min(s.cssMin, css);
+        s.layoutMin = Math.min(s.layoutMin, layout);
+        s.samples++;
+    }
+
+    /** Parcourt l'arbre: ordre des conteneurs, chemins, nombre de nœuds et profondeur. */
+    private void index() {
+        List<Parent> post = new ArrayList<>();
+        List<Integer> firsts = new ArrayList<>();
+        List<Parent> pre = new ArrayList<>();
+        Map<Parent, Stats> next = new IdentityHashMap<>();
+        visit(root, name(root), 0, post, firsts, pre, next);
+        if (post.size() != order.length) cursor = 0;
+        order = post.toArray(new Parent[0]);
+        first = firsts.stream().mapToInt(Integer::intValue).toArray();
+        preorder = pre;
+        stats.forEach((node, s) -> {
+            if (next.get(node) != s) unwatch(node, s);
+        });
+        next.forEach((node, s) -> {
+            if (s.watcher == null) {
+                s.watcher = (obs, was, needed) -> {
+                    if (needed && !probing) s.relayouts++;
+                };
+                node.needsLayoutProperty().addListener(s.watcher);
+            }
+        });
+        stats = next;
+    }
+
+    private static void unwatch(Parent node, Stats s) {
+        if (s.watcher != null) node.needsLayoutProperty().removeListener(s.watcher);
+        s.watcher = null;
+    }
+
+    private Stats visit(Parent parent, String path, int level, List<Parent> post, List<Integer> firsts,
+                        List<Parent> pre, Map<Parent, Stats> next) {
+        Stats s = stats.get(parent);
+        if (s == null || !path.equals(s.path)) s = new Stats();
+        s.path = path;
+        s.label = label(parent);
+        s.level = level;
+        s.nodes = 1;
+        s.depth = 0;
+        s.children.clear();
+        pre.add(parent);
+        int start = post.size();
+        List<Node> children = parent.getChildrenUnmodifiable();
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            if (child instanceof Parent p) {
+                Stats c = visit(p, path + '/' + name(p) + '[' + i + ']', level + 1, post, firsts, pre, next);
+                s.children.add(c);
+                s.nodes += c.nodes;
+                s.depth = Math.max(s.depth, c.depth + 1);
+            } else {
+                s.nodes++;
+                s.depth = Math.max(s.depth, 1);
+            }
+        }
+        post.add(parent);
+        firsts.add(start);
+        next.put(parent, s);
+        return s;
+    }
+
+    private static String name(Node node) {
+        return node.getClass().getSimpleName();
+    }
+
+    private static String label(Node node) {
+        StringBuilder sb = new StringBuilder(name(node));
+        if (node.getId() != null && !node.getId().isEmpty()) sb.append('#').append(node.getId());
+        for (String styleClass : node.getStyleClass()) {
+            if (!"root".equals(styleClass)) sb.append('.').append(styleClass);
+        }
+        return sb.toString();
+    }
+
+    /** Instantané des mesures, en ordre du document. */
+    List<Row> rows() {
+        List<Row> out = new ArrayList<>(preorder.size());
+        for (Parent p : preorder) {
+            Stats s = stats.get(p);
+            out.add(new Row(p, s.path, s.label, s.level, s.nodes, s.depth, s.relayouts, s.samples,
+                    s.cssMs(), s.layoutMs(), s.totalMs(), s.selfMs(), s.meanMs()));
+        }
+        return out;
+    }
+
+    // --- Affichage ---
+
+    private void refresh() {
+        updateHeatmap();
+        if (table != null) {
+            rows.setAll(rows());
+            table.sort();
+        }
+        summary.setText(summaryText());
+    }
+
+    private String summaryText() {
+        return String.format(Locale.ROOT, "%d pulses · moy. %.2f ms · max %.2f ms · %d mesures · %d conteneurs",
+                pulses, pulses == 0 ? 0 : pulseNanos / 1e6 / pulses, pulseMax / 1e6, probes, order.length);
+    }
+
+    /** Zones des conteneurs au plus fort coût propre, rouge d'autant plus opaque que le coût est grand. */
+    void updateHeatmap() {
+        List<Parent> hot = new ArrayList<>();
+        double max = 0;
+        for (Parent p : order) {
+            Stats s = stats.get(p);
+            if (s == null || s.samples == 0 || !shown(p)) continue;
+            hot.add(p);
+            max = Math.max(max, s.selfMs());
+        }
+        Map<Parent, Stats> current = stats;
+        hot.sort(Comparator.comparingDouble((Parent p) -> current.get(p).selfMs()).reversed());
+        List<Node> cells = new ArrayList<>();
+        for (Parent p : hot) {
+            if (cells.size() >= MAX_CELLS) break;
+            double heat = max == 0 ? 0 : current.get(p).selfMs() / max;
+            if (heat < MIN_HEAT) break;
+            Bounds b = overlay.sceneToLocal(p.localToScene(p.getLayoutBounds()));
+            if (b == null || b.getWidth() <= 0 || b.getHeight() <= 0) continue;
+            Rectangle r = new Rectangle(b.getMinX(), b.getMinY(), b.getWidth(), b.getHeight());
+            r.setFill(Color.rgb(255, 32, 32, 0.08 + 0.42 * heat));
+            r.setStroke(Color.rgb(255, 32, 32, 0.3 + 0.7 * heat));
+            cells.add(r);
+        }
+        // Les plus chaudes dessinées en dernier, au-dessus
+        Collections.reverse(cells);
+        cells.add(selection);
+        overlay.getChildren().setAll(cells);
+        highlight(table == null ? null : table.getSelectionModel().getSelectedItem());
+    }
+
+    private void highlight(Row row) {
+        if (row == null || row.node().getScene() != scene || !shown(row.node())) {
+            selection.setVisible(false);
+            return;
+        }
+        Bounds b = overlay.sceneToLocal(row.node().localToScene(row.node().getLayoutBounds()));
+        selection.setX(b.getMinX());
+        selection.setY(b.getMinY());
+        selection.setWidth(b.getWidth());
+        selection.setHeight(b.getHeight());
+        selection.setVisible(true);
+    }
+
+    /** Visible avec tous ses ancêtres (un onglet non sélectionné ne l'est pas). */
+    private static boolean shown(Node node) {
+        for (Node n = node; n != null; n = n.getParent()) {
+            if (!n.isVisible()) return false;
+        }
+        return true;
+    }
+
+    /** Fenêtre de la table triable (créée au premier appel). */
+    void showTable() {
+        if (window == null) {
+            table = new TableView<>(rows);
+            TableColumn<Row, String> label = column("Conteneur", Row::label, null);
+            label.setPrefWidth(260);
+            TableColumn<Row, Double> self = column("Propre (ms)", Row::selfMs, "%.3f");
+            TableColumn<Row, String> path = column("Chemin", Row::path, null);
+            path.setPrefWidth(320);
+            table.getColumns().addAll(List.of(label, self,
+                    column("Sous-arbre (ms)", Row::totalMs, "%.3f"),
+                    column("CSS (ms)", Row::cssMs, "%.3f"),
+                    column("Layout (ms)", Row::layoutMs, "%.3f"),
+                    column("Nœuds", Row::nodes, null),
+                    column("Profondeur", Row::depth, null),
+                    column("Niveau", Row::level, null),
+                    column("Relayouts", Row::relayouts, null),
+                    column("Mesures", Row::samples, null),
+                    path));
+            self.setSortType(TableColumn.SortType.DESCENDING);
+            table.getSortOrder().add(self);
+            table.getSelectionModel().selectedItemProperty().addListener((obs, was, row) -> highlight(row));
+
+            Button measure = new Button("Mesurer");
+            measure.setOnAction(e -> probe());
+            Button clear = new Button("Réinitialiser");
+            clear.setOnAction(e -> reset());
+            Button export = new Button("Exporter…");
+            export.setOnAction(e -> exportDialog());
+            CheckBox heatmap = new CheckBox("Carte");
+            heatmap.setSelected(true);
+            overlay.visibleProperty().bind(heatmap.selectedProperty());
+
+            BorderPane content = new BorderPane(table);
+            content.setTop(new ToolBar(measure, clear, export, heatmap, new Label("  "), summary));
+            window = new Stage();
+            window.initOwner(owner);
+            window.setTitle("Profil layout/CSS - " + document);
+            window.setScene(new Scene(content, 900, 480));
+            window.setOnHidden(e -> onClosed.run());
+            refresh();
+        }
+        window.show();
+    }
+
+    private static <T> TableColumn<Row, T> column(String title, Function<Row, T> value, String format) {
+        TableColumn<Row, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(value.apply(c.getValue())));
+        if (format != null) {
+            column.setCellFactory(c -> new TableCell<>() {
+                @Override
+                protected void updateItem(T item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty || item == null ? null : String.format(Locale.ROOT, format, item));
+                }
+            });
+        }
+        return column;
+    }
+
+    private void exportDialog() {
+        FileChooser saver = new FileChooser();
+        saver.setTitle("Exporter le profil");
+        saver.setInitialFileName("profil-" + document.replaceAll("\\.fxml$", "") + ".json");
+        saver.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON", "*.json"));
+        File target = saver.showSaveDialog(window);
+        if (target == null) return;
+        try {
+            dump(target.toPath());
+            status.accept("Profil exporté: " + target.getName());
+        } catch (IOException ex) {
+            status.accept("Export du profil impossible: " + ex.getMessage());
+        }
+    }
+
+    /** Écrit les mesures en JSON (conteneurs en ordre du document, identifiés par leur chemin). */
+    void dump(Path target) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("document").value(document)
+                .name("date").value(Instant.now().toString())
+                .name("pulses").beginObject()
+                .name("count").value(pulses)
+                .name("totalMs").value(pulseNanos / 1e6)
+                .name("meanMs").value(pulses == 0 ? 0 : pulseNanos / 1e6 / pulses)
+                .name("maxMs").value(pulseMax / 1e6)
+                .endObject()
+                .name("probes").value(probes)
+                .name("containers").beginArray();
+        for (Row row : rows()) {
+            json.beginObject()
+                    .name("path").value(row.path())
+                    .name("label").value(row.label())
+                    .name("level").value(row.level())
+                    .name("nodes").value(row.nodes())
+                    .name("depth").value(row.depth())
+                    .name("relayouts").value(row.relayouts())
+                    .name("samples").value(row.samples())
+                    .name("cssMs").value(row.cssMs())
+                    .name("layoutMs").value(row.layoutMs())
+                    .name("subtreeMs").value(row.totalMs())
+                    .name("selfMs").value(row.selfMs())
+                    .name("subtreeMeanMs").value(row.meanMs())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        Files.writeString(target, sb.append('\n'));
+    }
+}
@@ -0,0 +1,320 @@
+package com.testview.fx;
+
+import javafx.scene.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mode de chargement différé: le document préparé est découpé aux frontières des
+ * sous-arbres rarement visibles d'emblée, chargés chacun par leur propre FXMLLoader
+ * seulement quand ils sont affichés pour la première fois.
+ *
+ * Sont différés, s'ils comptent au moins {@link #MIN_ELEMENTS} éléments: le contenu
+ * des Tab (sauf le premier onglet de chaque TabPane, sélectionné à l'ouverture), celui
+ * des TitledPane repliés (expanded="false") et celui des TitledPane d'un Accordion.
+ * Chaque sous-arbre est remplacé par un {@link LazyPane}; découpage récursif (un
+ * onglet d'un onglet différé est lui-même différé), en une passe de {@link FxmlTokenizer}.
+ *
+ * Un fragment est un document autonome: instructions &lt;?import?&gt; et déclarations
+ * xmlns du document, puis le sous-arbre. Son texte est libéré une fois chargé.
+ *
+ * Variables FXML: le chargeur d'un fragment reçoit le namespace du document principal
+ * et des fragments déjà chargés ($id, ${id.prop}, fx:reference, fx:copy y retrouvent
+ * un fx:define ou un nœud de l'extérieur). Un sous-arbre n'est pas différé si un fx:id
+ * qu'il déclare est cité hors de lui (l'extérieur est chargé avant lui), ni s'il cite
+ * un fx:id d'un autre sous-arbre différé.
+ */
+final class LazyFxml {
+
+    /** Clé du namespace FXMLLoader sous laquelle les emplacements retrouvent leurs fragments. */
+    static final String NAMESPACE_KEY = "testviewLazy";
+
+    /** Taille minimale (en éléments) d'un sous-arbre différé: en deçà, un chargeur à part coûte plus cher. */
+    static final int MIN_ELEMENTS = Integer.getInteger("testview.lazy.minElements", 32);
+
+    final String fxml;
+    final URL baseUrl;
+    final String document;
+    private final String[] fragments;
+    /** Variables des chargements déjà faits (document principal, fragments), pour les fragments suivants. */
+    final Map<String, Object> namespace = new HashMap<>();
+
+    private LazyFxml(String fxml, List<String> fragments, URL baseUrl, String document) {
+        this.fxml = fxml;
+        this.fragments = fragments.toArray(new String[0]);
+        this.baseUrl = baseUrl;
+        this.document = document;
+    }
+
+    /** Nombre de sous-arbres différés. */
+    int deferred() {
+        return fragments.length;
+    }
+
+    /**
+     * Charge le sous-arbre différé index (thread JavaFX, ou graphe non encore attaché).
+     * Un fragment ne se charge qu'une fois.
+     */
+    Node load(int index) throws IOException {
+        String text = fragments[index];
+        if (text == null) throw new IllegalStateException("Sous-arbre différé déjà chargé: " + index);
+        fragments[index] = null;
+        LoadEvents.FxmlLoad event = new LoadEvents.FxmlLoad();
+        event.begin();
+        long start = System.nanoTime();
+        Node node;
+        try (InputStream in = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))) {
+            node = Launcher.load(in, baseUrl, this);
+        }
+        MetricsRegistry.shared().record("lazyLoadMs", (System.nanoTime() - start) / 1e6);
+        if (event.shouldCommit()) {
+            event.document = document + " [différé " + index + "]";
+            event.nodes = Launcher.countNodes(node);
+            event.commit();
+        }
+        return node;
+    }
+
+    // --- Découpage ---
+
+    private enum Kind { TAB_PANE, TABS, TAB, ACCORDION, PANES, TITLED_PANE, CONTENT, OTHER }
+
+    /** Élément ouvert; deferrable: ses enfants (contenu) sont des racines de fragment. */
+    private static final class Frame {
+        final Kind kind;
+        final boolean deferrable;
+        int tabs;
+
+        Frame(Kind kind, boolean deferrable) {
+            this.kind = kind;
+            this.deferrable = deferrable;
+        }
+    }
+
+    /** Sous-arbre en cours de capture. */
+    private static final class Capture {
+        final int depth;
+        final int tailOffset;
+        final int from;
+        final StringBuilder out = new StringBuilder();
+        final List<String> declared = new ArrayList<>();
+        int elements;
+
+        Capture(int depth, int tailOffset, int from) {
+            this.depth = depth;
+            this.tailOffset = tailOffset;
+            this.from = from;
+        }
+    }
+
+    /** Citation d'un fx:id (position de la balise ou du texte qui la porte). */
+    private record Reference(int at, String id) {}
+
+    /** fx:id déclarés et cités dans le document, par position; sous-arbres déjà différés. */
+    private static final class Ids {
+        final Map<String, List<Integer>> defined = new HashMap<>();
+        final List<Reference> references = new ArrayList<>();
+        final List<int[]> deferred = new ArrayList<>();
+
+        /** Sans $ ni attribut source, aucun fx:id n'est cité: inutile d'analyser. */
+        static Ids scan(String fxml) {
+            Ids ids = new Ids();
+            if (fxml.indexOf('$') < 0 && !fxml.contains("source")) return ids;
+            FxmlTokenizer t = new FxmlTokenizer(fxml);
+            String fx = null;
+            int type;
+            while ((type = t.next()) != FxmlTokenizer.EOF) {
+                if (type == FxmlTokenizer.TEXT) {
+                    int s = t.start;
+                    while (s < t.end && FxmlTokenizer.isWhitespace(fxml.charAt(s))) s++;
+                    ids.reference(t.start, fxml, s, t.end);
+                } else if (type == FxmlTokenizer.START_TAG) {
+                    if (fx == null) fx = fxmlPrefix(t);
+                    boolean sourced = t.nameIs(fx + ":reference") || t.nameIs(fx + ":copy");
+                    for (int i = 0; i < t.attrCount; i++) {
+                        if (t.attrNameIs(i, fx + ":id")) {
+                            ids.defined.computeIfAbsent(t.attrValue(i), k -> new ArrayList<>()).add(t.start);
+                        } else if (sourced && t.attrNameIs(i, "source")) {
+                            ids.references.add(new Reference(t.start, t.attrValue(i).trim()));
+                        } else {
+                            ids.reference(t.start, fxml, t.attrValueStart[i], t.attrValueEnd[i]);
+                        }
+                    }
+                }
+            }
+            return ids;
+        }
+
+        /** Préfixe du namespace FXML déclaré par la racine (fx à défaut). */
+        private static String fxmlPrefix(FxmlTokenizer t) {
+            for (int i = 0; i < t.attrCount; i++) {
+                if (t.startsWith(t.attrNameStart[i], "xmlns:") && t.attrValue(i).startsWith("http://javafx.com/fxml")) {
+                    return t.input().subSequence(t.attrNameStart[i] + 6, t.attrNameEnd[i]).toString();
+                }
+            }
+            return "fx";
+        }
+
+        /**
+         * Valeur $id ou $id.prop: citation de id; expression ${...}: citation de chaque
+         * identifiant qui n'est pas une propriété (a.b: a seulement). $$ échappe le dollar.
+         */
+        private void reference(int at, String in, int start, int end) {
+            if (end - start < 2 || in.charAt(start) != '$' || in.charAt(start + 1) == '$') return;
+            boolean expression = in.charAt(start + 1) == '{';
+            int s = start + (expression ? 2 : 1);
+            do {
+                int e = s;
+                while (e < end && Character.isJavaIdentifierPart(in.charAt(e))) e++;
+                if (e > s && (!expression || in.charAt(s - 1) != '.')) {
+                    references.add(new Reference(at, in.substring(s, e)));
+                }
+                s = e + 1;
+            } while (expression && s < end);
+        }
+
+        /**
+         * Le sous-arbre [from, to[ peut-il être chargé à part: aucun de ses fx:id cité au
+         * dehors, aucune citation d'un fx:id pris dans un autre sous-arbre différé.
+         */
+        boolean selfContained(int from, int to) {
+            for (Reference reference : references) {
+                boolean inside = reference.at() >= from && reference.at() < to;
+                for (int at : defined.getOrDefault(reference.id(), List.of())) {
+                    boolean definedInside = at >= from && at < to;
+                    if (!inside && definedInside) return false;
+                    if (inside && !definedInside && isDeferred(at)) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isDeferred(int at) {
+            for (int[] range : deferred) {
+                if (at >= range[0] && at < range[1]) return true;
+            }
+            return false;
+        }
+    }
+
+    /** Découpe un document préparé ({@link FxmlSanitizer#prepare}). */
+    static LazyFxml split(String fxml, URL baseUrl, String document) {
+        FxmlTokenizer t = new FxmlTokenizer(fxml);
+        StringBuilder main = new StringBuilder(fxml.length());
+        StringBuilder prolog = new StringBuilder();
+        List<String> namespaces = new ArrayList<>();
+        List<String> fragments = new ArrayList<>();
+        Deque<Frame> stack = new ArrayDeque<>();
+        Deque<Capture> captures = new ArrayDeque<>();
+        Ids ids = Ids.scan(fxml);
+        boolean rootSeen = false;
+        int type;
+        while ((type = t.next()) != FxmlTokenizer.EOF) {
+            StringBuilder out = captures.isEmpty() ? main : captures.peek().out;
+            if (type == FxmlTokenizer.PI) {
+                if (!rootSeen && t.startsWith(t.start, "<?import")) prolog.append(fxml, t.start, t.end).append('\n');
+            } else if (type == FxmlTokenizer.START_TAG) {
+                Frame parent = stack.peek();
+                if (!rootSeen) {
+                    rootSeen = true;
+                    for (int i = 0; i < t.attrCount; i++) {
+                        if (t.startsWith(t.attrNameStart[i], "xmlns")) namespaces.add(fxml.substring(t.attrNameStart[i], t.attrEnd[i]));
+                    }
+                }
+                if (parent != null && parent.deferrable && !t.selfClosing && isInstanceElement(t)) {
+                    Capture capture = new Capture(stack.size(), t.tailStart - t.start, t.start);
+                    for (int i = 0; i < t.attrCount; i++) capture.declared.add(fxml.substring(t.attrNameStart[i], t.attrNameEnd[i]));
+                    captures.push(capture);
+                    out = capture.out;
+                }
+                if (!captures.isEmpty()) captures.peek().elements++;
+                out.append(fxml, t.start, t.end);
+                if (!t.selfClosing) stack.push(open(t, parent, stack));
+                continue;
+            } else if (type == FxmlTokenizer.END_TAG) {
+                if (!stack.isEmpty()) stack.pop();
+                out.append(fxml, t.start, t.end);
+                if (!captures.isEmpty() && captures.peek().depth == stack.size()) {
+                    Capture capture = captures.pop();
+                    StringBuilder into = captures.isEmpty() ? main : captures.peek().out;
+                    if (capture.elements < MIN_ELEMENTS || !ids.selfContained(capture.from, t.end)) {
+                        into.append(capture.out);
+                        if (!captures.isEmpty()) captures.peek().elements += capture.elements - 1;
+                    } else {
+                        into.append("<com.testview.fx.LazyPane source=\"$").append(NAMESPACE_KEY)
+                                .append("\" index=\"").append(fragments.size()).append("\"/>");
+                        fragments.add(fragment(prolog, namespaces, capture));
+                        ids.deferred.add(new int[] {capture.from, t.end});
+                    }
+                }
+                continue;
+            }
+            out.append(fxml, t.start, t.end);
+        }
+        return new LazyFxml(main.toString(), fragments, baseUrl, document);
+    }
+
+    private static Frame open(FxmlTokenizer t, Frame parent, Deque<Frame> stack) {
+        Kind parentKind = parent == null ? Kind.OTHER : parent.kind;
+        if (t.nameEndsWithProperty("TabPane")) return new Frame(Kind.TAB_PANE, false);
+        if (t.nameEndsWithProperty("Accordion")) return new Frame(Kind.ACCORDION, false);
+        if (t.nameIs("tabs") && parentKind == Kind.TAB_PANE) return new Frame(Kind.TABS, false);
+        if (t.nameIs("panes") && parentKind == Kind.ACCORDION) return new Frame(Kind.PANES, false);
+        if (t.nameEndsWithProperty("Tab")) {
+            Frame pane = parentKind == Kind.TAB_PANE ? parent : parentKind == Kind.TABS ? grandParent(stack) : null;
+            // Le premier onglet est sélectionné à l'ouverture: inutile de le différer
+            boolean deferrable = pane != null && ++pane.tabs > 1;
+            return new Frame(Kind.TAB, deferrable);
+        }
+        if (t.nameEndsWithProperty("TitledPane")) {
+            int expanded = t.findAttribute("expanded");
+            boolean collapsed = expanded >= 0 && FxmlTokenizer.regionEqualsIgnoreCase(
+                    t.input(), t.attrValueStart[expanded], t.attrValueEnd[expanded], "false");
+            boolean inAccordion = parentKind == Kind.ACCORDION || parentKind == Kind.PANES;
+            return new Frame(Kind.TITLED_PANE, collapsed || inAccordion);
+        }
+        if (t.nameIs("content") && (parentKind == Kind.TAB || parentKind == Kind.TITLED_PANE)) {
+            return new Frame(Kind.CONTENT, parent.deferrable);
+        }
+        return new Frame(Kind.OTHER, false);
+    }
+
+    private static Frame grandParent(Deque<Frame> stack) {
+        var it = stack.iterator();
+        it.next();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** Élément d'instance (classe) plutôt que de propriété ou du langage FXML: VBox, javafx.scene.layout.VBox. */
+    private static boolean isInstanceElement(FxmlTokenizer t) {
+        CharSequence in = t.input();
+        int last = t.nameStart;
+        for (int i = t.nameStart; i < t.nameEnd; i++) {
+            char c = in.charAt(i);
+            if (c == ':') return false;
+            if (c == '.') last = i + 1;
+        }
+        return last < t.nameEnd && Character.isUpperCase(in.charAt(last));
+    }
+
+    private static String fragment(StringBuilder prolog, List<String> namespaces, Capture capture) {
+        StringBuilder ns = new StringBuilder();
+        for (String declaration : namespaces) {
+            String name = declaration.substring(0, declaration.indexOf('=')).trim();
+            if (!capture.declared.contains(name)) ns.append(' ').append(declaration);
+        }
+        capture.out.insert(capture.tailOffset, ns);
+        return new StringBuilder(prolog.length() + capture.out.length())
+                .append(prolog).append(capture.out).toString();
+    }
+}
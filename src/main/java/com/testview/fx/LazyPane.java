@@ -0,0 +1,108 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TitledPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Emplacement d'un sous-arbre différé (voir {@link LazyFxml}), inséré par le découpage
+ * à la place du contenu d'un onglet ou d'un volet: public car instancié par FXMLLoader.
+ *
+ * Une fois attaché (création de l'habillage du TabPane ou du TitledPane), il attend
+ * que l'onglet soit sélectionné ou le volet déplié, puis charge son fragment et le
+ * met à la place du contenu, au pulse suivant: on ne modifie pas le graphe pendant
+ * la création d'un habillage. Ailleurs (document retouché à la main), il se remplace
+ * dès qu'il est attaché.
+ */
+public final class LazyPane extends StackPane {
+
+    private LazyFxml source;
+    private int index = -1;
+    private boolean bound;
+
+    public LazyPane() {
+        getStyleClass().add("lazy-pane");
+        parentProperty().addListener((obs, old, parent) -> {
+            if (parent != null && !bound && source != null) bind();
+        });
+    }
+
+    public LazyFxml getSource() {
+        return source;
+    }
+
+    public void setSource(LazyFxml source) {
+        this.source = source;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    private void bind() {
+        bound = true;
+        for (Parent n = getParent(); n != null; n = n.getParent()) {
+            if (n instanceof TitledPane pane && pane.getContent() == this) {
+                whenTrue(pane.expandedProperty(), () -> pane.setContent(materialize()));
+                return;
+            }
+            if (n instanceof TabPane pane) {
+                for (Tab tab : pane.getTabs()) {
+                    if (tab.getContent() == this) {
+                        whenTrue(tab.selectedProperty(), () -> tab.setContent(materialize()));
+                        return;
+                    }
+                }
+            }
+        }
+        Platform.runLater(() -> {
+            Node node = materialize();
+            if (getParent() instanceof Pane parent) {
+                int i = parent.getChildren().indexOf(this);
+                if (i >= 0) {
+                    parent.getChildren().set(i, node);
+                    return;
+                }
+            }
+            getChildren().setAll(node);
+        });
+    }
+
+    /** Exécute action au pulse suivant, dès que value est vraie (une seule fois). */
+    private static void whenTrue(ObservableBooleanValue value, Runnable action) {
+        if (value.get()) {
+            Platform.runLater(action);
+            return;
+        }
+        value.addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> obs, Boolean was, Boolean now) {
+                if (!now) return;
+                value.removeListener(this);
+                Platform.runLater(action);
+            }
+        });
+    }
+
+    private Node materialize() {
+        try {
+            return source.load(index);
+        } catch (Exception e) {
+            // On garde le reste de l'aperçu: seul ce sous-arbre est en erreur
+            return new Label("Sous-arbre différé illisible: " + e.getMessage());
+        }
+    }
+}
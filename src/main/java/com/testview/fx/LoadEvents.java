@@ -0,0 +1,149 @@
+package com.testview.fx;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Événements JFR du chargement d'un aperçu, un par étape (voir {@link LoadMetrics}),
+ * et du démarrage de l'application ({@link Startup}).
+ *
+ * Inactifs et quasi gratuits tant qu'aucun enregistrement n'est en cours; à activer
+ * par exemple avec -XX:StartFlightRecording:filename=apercu.jfr puis ouvrir le fichier
+ * dans JDK Mission Control (catégorie « Test View / FXML »).
+ */
+final class LoadEvents {
+
+    private LoadEvents() {}
+
+    @Name("com.testview.fx.Read")
+    @Label("Lecture FXML")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class Read extends Event {
+        @Label("Document")
+        String document;
+
+        @Label("Taille")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.testview.fx.Sanitize")
+    @Label("Nettoyage FXML")
+    @Description("Réécriture en une passe du document racine (sans ses includes)")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class Sanitize extends Event {
+        @Label("Document")
+        String document;
+
+        @Label("Caractères lus")
+        long chars;
+    }
+
+    @Name("com.testview.fx.Includes")
+    @Label("Includes FXML")
+    @Description("Récupération du graphe d'includes et assemblage du document")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class Includes extends Event {
+        @Label("Document")
+        String document;
+
+        @Label("Includes inlinés")
+        int includes;
+
+        @Label("Fichiers distincts")
+        int distinct;
+
+        @Label("Profondeur maximale")
+        int depth;
+
+        @Label("Caractères produits")
+        long chars;
+    }
+
+    @Name("com.testview.fx.IncludeFetch")
+    @Label("Fragment inclus")
+    @Description("Lecture d'un fragment inclus, depuis FragmentCache ou la source")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class IncludeFetch extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Depuis le cache")
+        boolean cached;
+
+        @Label("Caractères")
+        long chars;
+    }
+
+    @Name("com.testview.fx.PreviewCacheLookup")
+    @Label("Cache des aperçus")
+    @Description("Recherche et vérification d'un aperçu préparé dans le cache disque")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class PreviewCacheLookup extends Event {
+        @Label("Document")
+        String document;
+
+        @Label("Trouvé")
+        boolean hit;
+
+        @Label("Taille")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.testview.fx.FxmlLoad")
+    @Label("FXMLLoader.load")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class FxmlLoad extends Event {
+        @Label("Document")
+        String document;
+
+        @Label("Nœuds")
+        int nodes;
+    }
+
+    @Name("com.testview.fx.Startup")
+    @Label("Démarrage")
+    @Description("Du lancement du processus à la première image de la fenêtre d'accueil")
+    @Category({"Test View", "Démarrage"})
+    @StackTrace(false)
+    static final class Startup extends Event {
+        @Label("main()")
+        @Timespan(Timespan.MILLISECONDS)
+        long main;
+
+        @Label("JavaFX prêt")
+        @Timespan(Timespan.MILLISECONDS)
+        long toolkit;
+
+        @Label("Fenêtre affichée")
+        @Timespan(Timespan.MILLISECONDS)
+        long shown;
+
+        @Label("Première image")
+        @Timespan(Timespan.MILLISECONDS)
+        long firstFrame;
+    }
+
+    @Name("com.testview.fx.FirstPulse")
+    @Label("Premier rendu")
+    @Description("De show() (ou du remplacement de la racine) à la fin du premier pulse CSS + layout")
+    @Category({"Test View", "FXML"})
+    @StackTrace(false)
+    static final class FirstPulse extends Event {
+        @Label("Document")
+        String document;
+    }
+}
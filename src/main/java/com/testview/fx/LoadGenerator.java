@@ -0,0 +1,238 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Mode --loadgen: générateur de charge pour le serveur d'aperçus ({@link PreviewServer}).
+ *
+ * Les documents donnés (fichiers ou dossiers parcourus récursivement) sont envoyés en
+ * POST /render par --clients clients simultanés, --requests requêtes en tout. Avec
+ * --distinct N, chaque document est décliné en N variantes (un commentaire de fin
+ * différent): le serveur voit N contenus distincts par document, ce qui règle la part
+ * de requêtes servies par son cache. Un premier passage de --warmup requêtes, non
+ * compté, laisse chauffer le serveur.
+ *
+ * Rapport: débit, latences (p50, p90, p99, max), répartition des statuts HTTP et part
+ * des réponses servies par le cache, sur la sortie standard et, avec --report, en JSON.
+ *
+ * Utilisation: --loadgen &lt;fichier.fxml|dossier&gt;... [--url http://127.0.0.1:8765]
+ *   [--clients N] [--requests N] [--distinct N] [--warmup N] [--report &lt;fichier.json&gt;]
+ */
+final class LoadGenerator {
+
+    /** Résultat d'une requête: statut (0 si erreur réseau), latence, réponse servie par le cache. */
+    private record Sample(int status, long nanos, boolean hit) {}
+
+    /** Document à envoyer: contenu et dossier de base des chemins relatifs. */
+    private record Document(byte[] body, Path base) {}
+
+    private LoadGenerator() {}
+
+    static int run(String[] args) {
+        List<Path> inputs = new ArrayList<>();
+        String url = "http://127.0.0.1:" + PreviewServer.DEFAULT_PORT;
+        int clients = 4;
+        int requests = 200;
+        int distinct = 1;
+        int warmup = 0;
+        Path report = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url" -> url = args[++i];
+                    case "--clients" -> clients = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--requests" -> requests = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--distinct" -> distinct = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--warmup" -> warmup = Math.max(0, Integer.parseInt(args[++i]));
+                    case "--report" -> report = Path.of(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException("Option inconnue: " + args[i]);
+                        inputs.add(Path.of(args[i]));
+                    }
+                }
+            }
+            if (inputs.isEmpty()) throw new IllegalArgumentException("Aucun document à envoyer");
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --loadgen <fichier.fxml|dossier>... [--url http://127.0.0.1:8765] [--clients N]"
+                    + " [--requests N] [--distinct N] [--warmup N] [--report <fichier.json>]");
+            return 2;
+        }
+
+        try {
+            List<Document> documents = documents(inputs, distinct);
+            if (documents.isEmpty()) {
+                System.err.println("Aucun fichier .fxml trouvé");
+                return 2;
+            }
+            URI render = URI.create(url.replaceAll("/+$", "") + "/render");
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newFixedThreadPool(clients, BatchRenderer.daemon("fxml-loadgen-io-")))
+                    .build();
+
+            if (warmup > 0) fire(client, render, documents, clients, warmup);
+            long start = System.nanoTime();
+            List<Sample> samples = fire(client, render, documents, clients, requests);
+            long elapsed = System.nanoTime() - start;
+
+            String json = summarize(samples, elapsed, clients, documents.size());
+            if (report != null) {
+                if (report.getParent() != null) Files.createDirectories(report.getParent());
+                Files.writeString(report, json);
+                System.out.println("Rapport: " + report.toAbsolutePath());
+            }
+            return samples.stream().allMatch(s -> s.status() == 200) ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Erreur: " + e.getMessage());
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /** Documents .fxml des entrées, chacun décliné en variantes de contenu distinct. */
+    private static List<Document> documents(List<Path> inputs, int distinct) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        for (Path input : inputs) {
+            List<Path> files;
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    files = walk.filter(p -> p.getFileName().toString().endsWith(".fxml") && Files.isRegularFile(p))
+                            .sorted().toList();
+                }
+            } else {
+                files = List.of(input);
+            }
+            for (Path file : files) {
+                byte[] body = Files.readAllBytes(file);
+                Path base = file.toAbsolutePath().normalize().getParent();
+                for (int v = 0; v < distinct; v++) {
+                    byte[] variant = v == 0 ? body : concat(body, ("\n<!-- variante " + v + " -->\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    documents.add(new Document(variant, base));
+                }
+            }
+        }
+        return documents;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    /** count requêtes, documents pris à tour de rôle, par clients threads. */
+    private static List<Sample> fire(HttpClient client, URI render, List<Document> documents, int clients, int count)
+            throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients, BatchRenderer.daemon("fxml-loadgen-"));
+        List<Future<List<Sample>>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(pool.submit(() -> {
+                List<Sample> samples = new ArrayList<>();
+                for (int i; (i = next.getAndIncrement()) < count; ) {
+                    samples.add(send(client, render, documents.get(i % documents.size())));
+                }
+                return samples;
+            }));
+        }
+        List<Sample> all = new ArrayList<>(count);
+        try {
+            for (Future<List<Sample>> f : futures) all.addAll(f.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return all;
+    }
+
+    private static Sample send(HttpClient client, URI render, Document document) {
+        URI uri = URI.create(render + "?base=" + URLEncoder.encode(document.base().toString(), StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/xml")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(document.body()))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            boolean hit = "hit".equals(response.headers().firstValue("X-Cache").orElse(""));
+            return new Sample(response.statusCode(), System.nanoTime() - start, hit);
+        } catch (IOException e) {
+            return new Sample(0, System.nanoTime() - start, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Sample(0, System.nanoTime() - start, false);
+        }
+    }
+
+    /** Affiche le résumé et le retourne en JSON. */
+    private static String summarize(List<Sample> samples, long elapsed, int clients, int documents) {
+        long[] nanos = samples.stream().mapToLong(Sample::nanos).sorted().toArray();
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        long hits = 0;
+        for (Sample s : samples) {
+            statuses.merge(s.status(), 1, Integer::sum);
+            if (s.hit()) hits++;
+        }
+        double seconds = elapsed / 1e9;
+        double throughput = samples.size() / Math.max(seconds, 1e-9);
+        double hitRatio = samples.isEmpty() ? 0 : (double) hits / samples.size();
+
+        System.out.printf("%d requêtes, %d clients, %d documents distincts en %.2f s: %.1f req/s%n",
+                samples.size(), clients, documents, seconds, throughput);
+        System.out.printf("Latence (ms): p50 %.1f · p90 %.1f · p99 %.1f · max %.1f%n",
+                ms(nanos, 0.50), ms(nanos, 0.90), ms(nanos, 0.99), nanos[nanos.length - 1] / 1e6);
+        System.out.printf("Statuts: %s · cache %.0f %%%n", statuses, 100 * hitRatio);
+
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("requests").value(samples.size())
+                .name("clients").value(clients)
+                .name("documents").value(documents)
+                .name("seconds").value(seconds)
+                .name("throughput").value(throughput)
+                .name("cacheHitRatio").value(hitRatio)
+                .name("latencyMs").beginObject()
+                .name("p50").value(ms(nanos, 0.50))
+                .name("p90").value(ms(nanos, 0.90))
+                .name("p99").value(ms(nanos, 0.99))
+                .name("max").value(nanos[nanos.length - 1] / 1e6)
+                .endObject()
+                .name("statuses").beginObject();
+        for (Map.Entry<Integer, Integer> e : statuses.entrySet()) {
+            json.name(e.getKey() == 0 ? "network" : e.getKey().toString()).value(e.getValue());
+        }
+        json.endObject().endObject();
+        return sb.append('\n').toString();
+    }
+
+    private static double ms(long[] sorted, double p) {
+        return PreviewServer.LatencyWindow.percentile(sorted, p) / 1e6;
+    }
+}
@@ -0,0 +1,118 @@
+package com.testview.fx;
+
+import java.util.Locale;
+
+/**
+ * Mesures d'un chargement d'aperçu: durée de chaque étape, volumes, includes, nœuds.
+ *
+ * Rempli au fil du pipeline (thread de chargement, puis thread JavaFX pour le premier
+ * rendu); chaque étape est aussi reportée dans {@link MetricsRegistry} et émise en
+ * événement JFR ({@link LoadEvents}). La collecte des URLs de stylesheets se fait dans
+ * la même passe que le nettoyage et l'assemblage: elle n'a pas d'étape propre.
+ */
+final class LoadMetrics {
+
+    enum Stage {
+        READ("lecture"),
+        CACHE("cache"),
+        SANITIZE("nettoyage"),
+        INCLUDES("includes"),
+        LOAD("FXMLLoader"),
+        FIRST_PULSE("1er rendu");
+
+        final String label;
+        final String key;
+
+        Stage(String label) {
+            this.label = label;
+            this.key = name().toLowerCase(Locale.ROOT).replace("_p", "P");
+        }
+    }
+
+    final String document;
+    private final long[] nanos = new long[Stage.values().length];
+
+    long bytesRead = -1;
+    long sourceChars;
+    long outputChars;
+    int includes;
+    int distinctIncludes;
+    int includeDepth;
+    int stylesheets;
+    int nodes = -1;
+    /** Document trouvé dans {@link PreviewCache}: pas de nettoyage ni d'includes. */
+    boolean cacheHit;
+    /** Sous-arbres différés en mode chargement différé (voir {@link LazyFxml}). */
+    int deferred;
+    final long timestamp = System.currentTimeMillis();
+
+    LoadMetrics(String document) {
+        this.document = document;
+        java.util.Arrays.fill(nanos, -1);
+    }
+
+    /** Enregistre la durée d'une étape, ici et dans le registre global. */
+    void stage(Stage stage, long durationNanos) {
+        nanos[stage.ordinal()] = durationNanos;
+        MetricsRegistry.shared().record(stage, durationNanos);
+    }
+
+    /** Durée de l'étape en nanosecondes, -1 si elle n'a pas (encore) eu lieu. */
+    long nanos(Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    long totalNanos() {
+        long total = 0;
+        for (long n : nanos) if (n > 0) total += n;
+        return total;
+    }
+
+    /** Résumé d'une ligne pour un titre de fenêtre ou une barre d'état. */
+    String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(millis(totalNanos())).append(" ms (");
+        boolean first = true;
+        for (Stage s : Stage.values()) {
+            long n = nanos(s);
+            if (n < 0) continue;
+            if (!first) sb.append(" · ");
+            first = false;
+            sb.append(s.label).append(' ').append(millis(n));
+            if (s == Stage.INCLUDES && includes > 0) {
+                sb.append(" [").append(includes).append(", prof. ").append(includeDepth).append(']');
+            }
+            if (s == Stage.CACHE && cacheHit) sb.append(" [trouvé]");
+        }
+        sb.append(')');
+        if (nodes >= 0) sb.append(" · ").append(nodes).append(" nœuds");
+        if (deferred > 0) sb.append(" · ").append(deferred).append(" sous-arbres différés");
+        return sb.toString();
+    }
+
+    void writeJson(JsonWriter json) {
+        json.beginObject()
+                .name("document").value(document)
+                .name("timestamp").value(timestamp)
+                .name("totalMs").value(totalNanos() / 1e6);
+        for (Stage s : Stage.values()) {
+            long n = nanos(s);
+            if (n >= 0) json.name(s.key + "Ms").value(n / 1e6);
+        }
+        json.name("bytesRead").value(bytesRead)
+                .name("sourceChars").value(sourceChars)
+                .name("outputChars").value(outputChars)
+                .name("includes").value(includes)
+                .name("distinctIncludes").value(distinctIncludes)
+                .name("includeDepth").value(includeDepth)
+                .name("stylesheets").value(stylesheets)
+                .name("cacheHit").value(cacheHit)
+                .name("nodes").value(nodes)
+                .name("deferred").value(deferred)
+                .endObject();
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(Math.round(nanos / 1e6));
+    }
+}
@@ -0,0 +1,142 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registre des mesures de chargement, à l'échelle du processus.
+ *
+ * Agrège par étape (durées) et par grandeur (octets, includes, nœuds) le nombre
+ * d'observations, le total, le minimum et le maximum, et garde les
+ * {@link #RECENT_LOADS} derniers chargements complets pour l'export JSON.
+ */
+final class MetricsRegistry {
+
+    static final int RECENT_LOADS = 200;
+
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    /** Statistiques cumulées d'une grandeur. */
+    private static final class Stat {
+        long count;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    private final Map<String, Stat> stats = new LinkedHashMap<>();
+    private final Deque<LoadMetrics> recent = new ArrayDeque<>();
+
+    static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    synchronized void record(LoadMetrics.Stage stage, long nanos) {
+        add(stage.key + "Ms", nanos / 1e6);
+    }
+
+    /** Observation isolée, hors chargement complet (ex. sous-arbre différé). */
+    synchronized void record(String name, double value) {
+        add(name, value);
+    }
+
+    /** Enregistre un chargement complet (document construit) et ses volumes. */
+    synchronized void completed(LoadMetrics metrics) {
+        if (metrics.bytesRead >= 0) add("bytesRead", metrics.bytesRead);
+        add("outputChars", metrics.outputChars);
+        add("includes", metrics.includes);
+        add("includeDepth", metrics.includeDepth);
+        if (metrics.nodes >= 0) add("nodes", metrics.nodes);
+        if (metrics.deferred > 0) add("deferred", metrics.deferred);
+        recent.addLast(metrics);
+        while (recent.size() > RECENT_LOADS) recent.removeFirst();
+    }
+
+    private void add(String name, double value) {
+        stats.computeIfAbsent(name, k -> new Stat()).add(value);
+    }
+
+    synchronized void clear() {
+        stats.clear();
+        recent.clear();
+    }
+
+    /** Statistiques agrégées (sans la liste des chargements récents). */
+    synchronized void writeStats(JsonWriter json) {
+        json.beginObject();
+        for (Map.Entry<String, Stat> e : stats.entrySet()) {
+            Stat s = e.getValue();
+            json.name(e.getKey()).beginObject()
+                    .name("count").value(s.count)
+                    .name("total").value(s.sum)
+                    .name("mean").value(s.sum / s.count)
+                    .name("min").value(s.min)
+                    .name("max").value(s.max)
+                    .endObject();
+        }
+        json.endObject();
+    }
+
+    /** Export complet: statistiques, caches (fragments, aperçus, images), démarrage et derniers chargements. */
+    String toJson() {
+        List<LoadMetrics> loads;
+        synchronized (this) {
+            loads = new ArrayList<>(recent);
+        }
+        FragmentCache cache = FragmentCache.shared();
+        PreviewCache previews = PreviewCache.shared();
+        AssetCache assets = AssetCache.shared();
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("generatedAt").value(System.currentTimeMillis())
+                .name("stats");
+        writeStats(json);
+        json.name("fragmentCache").beginObject()
+                .name("hits").value(cache.hits())
+                .name("misses").value(cache.misses())
+                .name("bytes").value(cache.sizeInBytes())
+                .endObject()
+                .name("previewCache").beginObject()
+                .name("enabled").value(previews.enabled())
+                .name("directory").value(previews.directory().toString())
+                .name("hits").value(previews.hits())
+                .name("misses").value(previews.misses())
+                .name("stores").value(previews.stores())
+                .name("evictions").value(previews.evictions())
+                .name("errors").value(previews.errors())
+                .endObject()
+                .name("imageCache").beginObject()
+                .name("images").value(assets.size())
+                .name("hits").value(assets.hits())
+                .name("misses").value(assets.misses())
+                .name("evictions").value(assets.evictions())
+                .name("bytes").value(assets.sizeInBytes())
+                .endObject()
+                .name("startup");
+        Startup.writeJson(json);
+        json.name("loads").beginArray();
+        for (LoadMetrics m : loads) m.writeJson(json);
+        json.endArray().endObject();
+        return sb.append('\n').toString();
+    }
+
+    void export(Path file) throws IOException {
+        Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+    }
+}
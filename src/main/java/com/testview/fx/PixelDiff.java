@@ -0,0 +1,192 @@
+package com.testview.fx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Différence pixel à pixel de deux images de même taille, en ARGB entier
+ * (tampons lus d'un bloc par PixelReader.getPixels, aucun objet par pixel).
+ *
+ * L'image est découpée en tuiles de {@link #TILE}×{@link #TILE} pixels traitées en
+ * parallèle sur le pool ForkJoin commun; chaque tuile écrit sa part de la carte des
+ * écarts et note le rectangle englobant de ses pixels modifiés. Les tuiles modifiées
+ * voisines (8-connexité) sont ensuite regroupées en zones, dont on garde le rectangle
+ * englobant serré.
+ *
+ * Écart d'un pixel: plus grand écart entre composantes (0 à 255); il compte s'il
+ * dépasse threshold. La carte des écarts est en ARGB non prémultiplié: transparente
+ * là où rien ne change, rouge d'autant plus opaque que l'écart est grand.
+ */
+final class PixelDiff {
+
+    static final int TILE = 64;
+    /** Tuiles par tâche feuille: assez pour amortir le découpage, assez peu pour équilibrer. */
+    private static final int TILES_PER_TASK = 8;
+
+    /** Zone modifiée, en pixels. */
+    record Box(int x, int y, int width, int height) {}
+
+    /**
+     * changedPixels: nombre de pixels modifiés; heatmap: carte des écarts (width × height,
+     * null si non demandée); boxes: zones modifiées; nanos: durée du calcul.
+     */
+    record Result(int width, int height, long changedPixels, int[] heatmap, List<Box> boxes, long nanos) {
+        double changedRatio() {
+            return width * height == 0 ? 0 : (double) changedPixels / ((long) width * height);
+        }
+    }
+
+    private PixelDiff() {}
+
+    static Result diff(int[] a, int[] b, int width, int height, int threshold, boolean heatmap) {
+        if (a.length < width * height || b.length < width * height) {
+            throw new IllegalArgumentException("Tampons trop petits pour " + width + "×" + height);
+        }
+        long start = System.nanoTime();
+        int cols = (width + TILE - 1) / TILE;
+        int rows = (height + TILE - 1) / TILE;
+        Tiles tiles = new Tiles(a, b, width, height, cols, rows, threshold,
+                heatmap ? new int[width * height] : null);
+        ForkJoinPool.commonPool().invoke(new TileTask(tiles, 0, cols * rows));
+        long changed = 0;
+        for (int c : tiles.changed) changed += c;
+        List<Box> boxes = tiles.boxes();
+        return new Result(width, height, changed, tiles.heat, boxes, System.nanoTime() - start);
+    }
+
+    /** État partagé des tuiles: chaque tâche n'écrit que dans ses propres cases. */
+    private static final class Tiles {
+        final int[] a;
+        final int[] b;
+        final int width;
+        final int height;
+        final int cols;
+        final int rows;
+        final int threshold;
+        final int[] heat;
+        final int[] changed;
+        // Rectangle englobant des pixels modifiés de chaque tuile (minX = -1 si aucun)
+        final int[] minX;
+        final int[] minY;
+        final int[] maxX;
+        final int[] maxY;
+
+        Tiles(int[] a, int[] b, int width, int height, int cols, int rows, int threshold, int[] heat) {
+            this.a = a;
+            this.b = b;
+            this.width = width;
+            this.height = height;
+            this.cols = cols;
+            this.rows = rows;
+            this.threshold = threshold;
+            this.heat = heat;
+            int n = cols * rows;
+            changed = new int[n];
+            minX = new int[n];
+            minY = new int[n];
+            maxX = new int[n];
+            maxY = new int[n];
+        }
+
+        void compare(int tile) {
+            int x0 = (tile % cols) * TILE;
+            int y0 = (tile / cols) * TILE;
+            int x1 = Math.min(x0 + TILE, width);
+            int y1 = Math.min(y0 + TILE, height);
+            int count = 0;
+            int bx0 = Integer.MAX_VALUE, by0 = Integer.MAX_VALUE, bx1 = -1, by1 = -1;
+            for (int y = y0; y < y1; y++) {
+                int row = y * width;
+                for (int i = row + x0, end = row + x1; i < end; i++) {
+                    int pa = a[i];
+                    int pb = b[i];
+                    if (pa == pb) continue;
+                    int delta = delta(pa, pb);
+                    if (delta <= threshold) continue;
+                    count++;
+                    int x = i - row;
+                    if (x < bx0) bx0 = x;
+                    if (x > bx1) bx1 = x;
+                    if (y < by0) by0 = y;
+                    by1 = y;
+                    if (heat != null) heat[i] = (0x60 + delta * 0x9F / 255) << 24 | 0xFF2020;
+                }
+            }
+            changed[tile] = count;
+            minX[tile] = count == 0 ? -1 : bx0;
+            minY[tile] = by0;
+            maxX[tile] = bx1;
+            maxY[tile] = by1;
+        }
+
+        /** Zones: composantes 8-connexes des tuiles modifiées, parcourues en largeur. */
+        List<Box> boxes() {
+            List<Box> boxes = new ArrayList<>();
+            int n = cols * rows;
+            boolean[] seen = new boolean[n];
+            int[] queue = new int[n];
+            for (int first = 0; first < n; first++) {
+                if (seen[first] || changed[first] == 0) continue;
+                int head = 0, tail = 0;
+                queue[tail++] = first;
+                seen[first] = true;
+                int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = -1, y1 = -1;
+                while (head < tail) {
+                    int tile = queue[head++];
+                    x0 = Math.min(x0, minX[tile]);
+                    y0 = Math.min(y0, minY[tile]);
+                    x1 = Math.max(x1, maxX[tile]);
+                    y1 = Math.max(y1, maxY[tile]);
+                    int col = tile % cols, row = tile / cols;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int c = col + dx, r = row + dy;
+                            if (c < 0 || r < 0 || c >= cols || r >= rows) continue;
+                            int next = r * cols + c;
+                            if (!seen[next] && changed[next] > 0) {
+                                seen[next] = true;
+                                queue[tail++] = next;
+                            }
+                        }
+                    }
+                }
+                boxes.add(new Box(x0, y0, x1 - x0 + 1, y1 - y0 + 1));
+            }
+            return boxes;
+        }
+    }
+
+    /** Plus grand écart entre composantes A, R, V, B. */
+    static int delta(int pa, int pb) {
+        int d = Math.abs((pa >>> 24) - (pb >>> 24));
+        d = Math.max(d, Math.abs((pa >> 16 & 0xFF) - (pb >> 16 & 0xFF)));
+        d = Math.max(d, Math.abs((pa >> 8 & 0xFF) - (pb >> 8 & 0xFF)));
+        return Math.max(d, Math.abs((pa & 0xFF) - (pb & 0xFF)));
+    }
+
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tiles tiles;
+        private final int from;
+        private final int to;
+
+        TileTask(Tiles tiles, int from, int to) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILES_PER_TASK) {
+                for (int tile = from; tile < to; tile++) tiles.compare(tile);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileTask(tiles, from, mid), new TileTask(tiles, mid, to));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.testview.fx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodeur PNG minimal (RGBA 8 bits, filtre « Sub ») pour les pixels ARGB d'un snapshot.
+ *
+ * Évite de dépendre de javafx.swing / ImageIO (AWT) pour le rendu sans affichage;
+ * sans état, donc utilisable depuis n'importe quel thread.
+ */
+final class PngWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private PngWriter() {}
+
+    /** Écrit l'image (pixels ARGB non prémultipliés, ligne par ligne) au format PNG. */
+    static void write(int[] argb, int width, int height, OutputStream out) throws IOException {
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("Dimensions invalides: " + width + "x" + height);
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream h = new DataOutputStream(header);
+        h.writeInt(width);
+        h.writeInt(height);
+        h.writeByte(8);  // bits par composante
+        h.writeByte(6);  // RGBA
+        h.writeByte(0);  // deflate
+        h.writeByte(0);  // filtrage adaptatif standard
+        h.writeByte(0);  // pas d'entrelacement
+        chunk(data, "IHDR", header.toByteArray(), header.size());
+
+        ExposedBuffer compressed = new ExposedBuffer(width * height + 1024);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream z = new DeflaterOutputStream(compressed, deflater, 64 * 1024)) {
+            byte[] row = new byte[1 + width * 4];
+            row[0] = 1; // Sub: chaque octet moins celui du pixel de gauche
+            for (int y = 0; y < height; y++) {
+                int prev = 0;
+                int o = 1;
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int p = argb[i];
+                    row[o++] = (byte) ((p >>> 16) - (prev >>> 16));
+                    row[o++] = (byte) ((p >>> 8) - (prev >>> 8));
+                    row[o++] = (byte) (p - prev);
+                    row[o++] = (byte) ((p >>> 24) - (prev >>> 24));
+                    prev = p;
+                }
+                z.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+        chunk(data, "IDAT", compressed.buffer(), compressed.size());
+        chunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] body, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(body, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(body, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** ByteArrayOutputStream dont on lit le tampon sans copie. */
+    private static final class ExposedBuffer extends ByteArrayOutputStream {
+        ExposedBuffer(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
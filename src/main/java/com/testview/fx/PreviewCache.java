@@ -0,0 +1,502 @@
+package com.testview.fx;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache disque des aperçus préparés, conservé d'un lancement à l'autre.
+ *
+ * Une entrée contient le document final tel que le lit FXMLLoader (nettoyé, includes
+ * inlinés, stylesheets retirées) et la liste de ses feuilles de style: une ouverture
+ * « à chaud » passe directement de la lecture du fichier à FXMLLoader.load.
+ *
+ * Clé: empreinte SHA-256 du fichier racine et de son URL de base, complétée par
+ * l'empreinte de chaque fichier de sa fermeture d'includes (includes d'includes et
+ * includes introuvables compris), enregistrée dans l'entrée et revérifiée à chaque
+ * lecture: une entrée dont un include a changé, disparu ou est apparu est ignorée,
+ * puis remplacée par le prochain chargement.
+ *
+ * Écriture sans risque de corruption: fichier temporaire dans le même répertoire,
+ * forcé sur disque puis renommé atomiquement; chaque entrée se termine par une somme
+ * CRC32C vérifiée à la lecture (une entrée tronquée ou abîmée est supprimée). Au-delà
+ * de testview.previewCache.maxBytes (512 Mo par défaut, 0 = cache désactivé), les
+ * entrées les moins récemment utilisées sont évincées. Répertoire:
+ * testview.previewCache.dir (par défaut sous le cache utilisateur, « testview-fx/previews »).
+ *
+ * Format d'une entrée: en-tête (MAGIC, FORMAT), document UTF-8, métadonnées (clé,
+ * stylesheets, includes et leurs empreintes), puis longueurs, CRC32C et MAGIC.
+ */
+final class PreviewCache {
+
+    /** À incrémenter quand la sortie du nettoyage ou le format des entrées change. */
+    static final int FORMAT = 2;
+
+    private static final int MAGIC = 0x54565043; // "TVPC"
+    private static final int HEADER = 8;
+    private static final int TRAILER = 20;
+    private static final String SUFFIX = ".fxc";
+    /** Un fichier temporaire plus ancien vient d'une écriture interrompue. */
+    private static final long STALE_TEMP_MS = 60L * 60 * 1000;
+    private static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    private static final PreviewCache SHARED = new PreviewCache(
+            Path.of(System.getProperty("testview.previewCache.dir", defaultDirectory().toString())),
+            Long.getLong("testview.previewCache.maxBytes", DEFAULT_MAX_BYTES));
+
+    /**
+     * Document préparé lu depuis le cache; fxml est une vue (souvent mappée) du fichier.
+     * includeHashes: empreintes enregistrées des includes, vérifiées à la lecture.
+     */
+    record Entry(ByteBuffer fxml, List<String> stylesheets, List<URL> includes, Map<String, byte[]> includeHashes) {
+        InputStream open() {
+            ByteBuffer in = fxml.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return in.hasRemaining() ? in.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) return 0;
+                    if (!in.hasRemaining()) return -1;
+                    int n = Math.min(len, in.remaining());
+                    in.get(b, off, n);
+                    return n;
+                }
+            };
+        }
+    }
+
+    /** Résultat d'une recherche: la clé du document (pour l'enregistrer ensuite) et l'entrée trouvée, ou null. */
+    record Lookup(String key, Entry entry) {}
+
+    private final Path directory;
+    private final long maxBytes;
+    private ExecutorService background;
+    private long hits;
+    private long misses;
+    private long stores;
+    private long evictions;
+    private long errors;
+
+    PreviewCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    static PreviewCache shared() {
+        return SHARED;
+    }
+
+    boolean enabled() {
+        return maxBytes > 0;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    /**
+     * Cherche l'aperçu préparé du document dont root est le contenu (étape CACHE).
+     * Ne lève pas d'exception: un cache illisible se comporte comme un cache vide.
+     */
+    Lookup lookup(ByteBuffer root, URL baseUrl, LoadMetrics metrics) {
+        if (!enabled()) return new Lookup(null, null);
+        LoadEvents.PreviewCacheLookup event = new LoadEvents.PreviewCacheLookup();
+        event.begin();
+        long start = System.nanoTime();
+        String key = key(root, baseUrl);
+        Entry entry = read(key);
+        synchronized (this) {
+            if (entry != null) hits++; else misses++;
+        }
+        metrics.cacheHit = entry != null;
+        metrics.stage(LoadMetrics.Stage.CACHE, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.document = metrics.document;
+            event.hit = entry != null;
+            event.bytes = entry != null ? entry.fxml().remaining() : 0;
+            event.commit();
+        }
+        return new Lookup(key, entry);
+    }
+
+    /** Empreinte du document racine (contenu et URL de base), nom de son entrée. */
+    static String key(ByteBuffer root, URL baseUrl) {
+        MessageDigest digest = sha256();
+        digest.update(ByteBuffer.allocate(4).putInt(0, FORMAT));
+        digest.update(String.valueOf(baseUrl).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(root.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Enregistre en arrière-plan un document préparé par {@link FxmlSanitizer#prepare}. */
+    void store(String key, FxmlSanitizer.Prepared prepared) {
+        if (!enabled() || key == null) return;
+        background().execute(() -> {
+            Writer out = writer(key);
+            if (out == null) return;
+            out.write(prepared.fxml().getBytes(StandardCharsets.UTF_8));
+            out.commit(prepared.stylesheets(), prepared.includes(), prepared.includeHashes());
+        });
+    }
+
+    /**
+     * Ouvre l'écriture d'une entrée, à remplir avec le document puis à valider par
+     * {@link Writer#commit}; null si le cache est désactivé ou inutilisable.
+     */
+    Writer writer(String key) {
+        if (!enabled() || key == null) return null;
+        try {
+            return new Writer(key);
+        } catch (IOException e) {
+            failed();
+            return null;
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long stores() {
+        return stores;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized long errors() {
+        return errors;
+    }
+
+    /** Vide le répertoire du cache. */
+    void clear() throws IOException {
+        for (Path file : entries()) Files.deleteIfExists(file);
+    }
+
+    /**
+     * Écriture d'une entrée: fichier temporaire, puis renommage atomique à commit().
+     * Les erreurs d'entrée/sortie ne remontent pas: l'entrée est simplement abandonnée.
+     */
+    final class Writer extends OutputStream {
+        private final String key;
+        private final Path temp;
+        private final FileChannel channel;
+        private final OutputStream out;
+        private final CRC32C crc = new CRC32C();
+        private long length;
+        private boolean failed;
+        private boolean closed;
+
+        private Writer(String key) throws IOException {
+            this.key = key;
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key.substring(0, 16), ".tmp");
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            byte[] header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(FORMAT).array();
+            out.write(header);
+            crc.update(header);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (failed || closed) return;
+            try {
+                out.write(b, off, len);
+                crc.update(b, off, len);
+                length += len;
+            } catch (IOException e) {
+                fail();
+            }
+        }
+
+        /**
+         * Termine l'entrée (métadonnées, empreintes des includes, somme de contrôle) et
+         * la publie. Retourne false si elle a été abandonnée. hashes donne l'empreinte de
+         * chaque include telle que lue pendant la préparation du document: une relecture
+         * ici pourrait voir un fichier modifié entre-temps et valider à tort une entrée
+         * construite avec l'ancien contenu.
+         */
+        boolean commit(List<String> stylesheets, Collection<URL> includes, Map<String, byte[]> hashes) {
+            if (failed || closed) return false;
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream meta = new DataOutputStream(bytes);
+                writeString(meta, key);
+                meta.writeInt(stylesheets.size());
+                for (String s : stylesheets) writeString(meta, s);
+                meta.writeInt(includes.size());
+                for (URL url : includes) {
+                    writeString(meta, url.toExternalForm());
+                    byte[] hash = hashes.get(url.toExternalForm());
+                    meta.writeInt(hash == null ? -1 : hash.length);
+                    if (hash != null) meta.write(hash);
+                }
+                byte[] metadata = bytes.toByteArray();
+                out.write(metadata);
+                crc.update(metadata);
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER).putLong(length).putInt(metadata.length);
+                crc.update(trailer.array(), 0, 12);
+                trailer.putInt((int) crc.getValue()).putInt(MAGIC);
+                out.write(trailer.array());
+                out.flush();
+                channel.force(true);
+                out.close();
+                closed = true;
+                Path target = directory.resolve(key + SUFFIX);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail();
+                return false;
+            }
+            synchronized (PreviewCache.this) {
+                stores++;
+            }
+            background().execute(PreviewCache.this::evict);
+            return true;
+        }
+
+        /** Abandonne l'entrée (chargement interrompu ou en échec). */
+        void abort() {
+            if (closed) return;
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // le fichier temporaire est supprimé de toute façon
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // sera retiré par une prochaine éviction
+            }
+        }
+
+        private void fail() {
+            failed = true;
+            abort();
+            failed();
+        }
+    }
+
+    /** Lit et vérifie l'entrée de la clé; null si absente, abîmée ou périmée. */
+    private Entry read(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        ByteBuffer data;
+        try {
+            data = SanitizingInputStream.map(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            failed();
+            return null;
+        }
+        try {
+            Entry entry = parse(data, key);
+            if (entry != null) Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            // Entrée tronquée ou abîmée (écriture interrompue hors de ce protocole, disque...)
+            failed();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // elle sera réécrite par le prochain chargement
+            }
+            return null;
+        }
+    }
+
+    private static Entry parse(ByteBuffer data, String key) throws IOException {
+        int size = data.limit();
+        if (size < HEADER + TRAILER || data.getInt(0) != MAGIC || data.getInt(size - 4) != MAGIC) {
+            throw new IOException("Entrée de cache invalide");
+        }
+        if (data.getInt(4) != FORMAT) throw new IOException("Format d'entrée périmé");
+        CRC32C crc = new CRC32C();
+        crc.update(data.duplicate().limit(size - 8));
+        if ((int) crc.getValue() != data.getInt(size - 8)) throw new IOException("Somme de contrôle incorrecte");
+        long length = data.getLong(size - TRAILER);
+        int metaLength = data.getInt(size - TRAILER + 8);
+        if (length < 0 || metaLength < 0 || HEADER + length + metaLength + TRAILER != size) {
+            throw new IOException("Longueurs incohérentes");
+        }
+        ByteBuffer meta = data.slice(HEADER + (int) length, metaLength);
+        if (!key.equals(readString(meta))) throw new IOException("Clé inattendue");
+        List<String> stylesheets = new ArrayList<>();
+        for (int i = meta.getInt(); i > 0; i--) stylesheets.add(readString(meta));
+        List<URL> includes = new ArrayList<>();
+        Map<String, byte[]> hashes = new LinkedHashMap<>();
+        for (int i = meta.getInt(); i > 0; i--) {
+            URL url = new URL(readString(meta));
+            int hashLength = meta.getInt();
+            byte[] stored = null;
+            if (hashLength >= 0) {
+                stored = new byte[hashLength];
+                meta.get(stored);
+            }
+            // Fermeture d'includes modifiée: entrée périmée (pas abîmée), on la garde pour l'écraser
+            if (!Arrays.equals(stored, FragmentCache.shared().contentHash(url))) return null;
+            includes.add(url);
+            hashes.put(url.toExternalForm(), stored);
+        }
+        return new Entry(data.slice(HEADER, (int) length), Collections.unmodifiableList(stylesheets),
+                Collections.unmodifiableList(includes), Collections.unmodifiableMap(hashes));
+    }
+
+    /** Ramène le cache sous maxBytes en retirant les entrées les moins récemment utilisées. */
+    private void evict() {
+        record Item(Path file, long size, long used) {}
+        List<Item> items = new ArrayList<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try {
+            for (Path file : entries()) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                long used = attrs.lastModifiedTime().toMillis();
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    if (now - used > STALE_TEMP_MS) Files.deleteIfExists(file);
+                    continue;
+                }
+                items.add(new Item(file, attrs.size(), used));
+                total += attrs.size();
+            }
+            if (total <= maxBytes) return;
+            items.sort(Comparator.comparingLong(Item::used));
+            // La plus récente (celle qu'on vient d'écrire) est toujours gardée
+            for (Item item : items.subList(0, items.size() - 1)) {
+                if (total <= maxBytes) break;
+                Files.deleteIfExists(item.file());
+                total -= item.size();
+                synchronized (this) {
+                    evictions++;
+                }
+            }
+        } catch (IOException e) {
+            failed();
+        }
+    }
+
+    /** Entrées et fichiers temporaires du répertoire. */
+    private List<Path> entries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{fxc,tmp}")) {
+            for (Path file : stream) files.add(file);
+        }
+        return files;
+    }
+
+    private synchronized ExecutorService background() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "fxml-preview-cache");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return background;
+    }
+
+    private synchronized void failed() {
+        errors++;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Répertoire de cache utilisateur de la plateforme. */
+    private static Path defaultDirectory() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        String home = System.getProperty("user.home");
+        Path base;
+        if (os.startsWith("windows") && System.getenv("LOCALAPPDATA") != null) {
+            base = Path.of(System.getenv("LOCALAPPDATA"));
+        } else if (os.startsWith("mac")) {
+            base = Path.of(home, "Library", "Caches");
+        } else if (System.getenv("XDG_CACHE_HOME") != null) {
+            base = Path.of(System.getenv("XDG_CACHE_HOME"));
+        } else {
+            base = Path.of(home, ".cache");
+        }
+        return base.resolve("testview-fx").resolve("previews");
+    }
+}
@@ -0,0 +1,204 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.Parent;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Chargement d'un aperçu hors du thread JavaFX.
+ *
+ * Étapes: lecture du fichier, nettoyage + inlining des includes, puis construction
+ * du graphe de nœuds par FXMLLoader; si {@link PreviewCache} contient déjà le document
+ * préparé (même contenu, mêmes includes), on passe directement à FXMLLoader. Les nœuds
+ * qui ne sont pas encore attachés à une scène peuvent être créés depuis n'importe quel
+ * thread; si le document contient un élément qui l'interdit (fenêtre, popup...), seule
+ * la dernière étape est rejouée sur le thread JavaFX. La Scene est attachée par l'appelant, dans onSucceeded.
+ *
+ * En mode différé (lazy), les onglets et volets repliés ne sont construits qu'à leur
+ * premier affichage (voir {@link LazyFxml}); ce mode a besoin du document entier et
+ * n'utilise donc pas la lecture en flux des gros fichiers.
+ *
+ * L'annulation est vérifiée entre chaque étape et interrompt l'attente du préchargement
+ * des includes ({@link IncludeResolver}); un FXMLLoader.load déjà commencé va à son
+ * terme mais son résultat est ignoré.
+ */
+final class PreviewLoadTask extends Task<PreviewLoadTask.Loaded> {
+
+    static final int STAGES = 3;
+
+    /** Graphe construit, dépendances du document (includes inlinés, feuilles de style) et mesures. */
+    record Loaded(Parent root, List<URL> includes, List<String> stylesheets, LoadMetrics metrics) {}
+
+    private final Path path;
+    private final boolean lazy;
+
+    PreviewLoadTask(Path path, boolean lazy) {
+        this.path = path;
+        this.lazy = lazy;
+        updateTitle(String.valueOf(path.getFileName()));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    protected Loaded call() throws Exception {
+        stage(0, "Lecture du fichier…");
+        if (!Files.exists(path)) {
+            throw new IOException("Fichier introuvable: " + path.toAbsolutePath());
+        }
+        LoadMetrics metrics = new LoadMetrics(path.toAbsolutePath().toString());
+        URL baseUrl = Launcher.toBaseUrl(path.toFile());
+        boolean streaming = !lazy && SanitizingInputStream.appliesTo(Files.size(path));
+        ByteBuffer bytes = streaming
+                ? SanitizingInputStream.read(path, metrics)
+                : ByteBuffer.wrap(readBytes(path, metrics));
+
+        // Aperçu déjà préparé lors d'un chargement précédent: ni nettoyage ni includes
+        PreviewCache cache = PreviewCache.shared();
+        PreviewCache.Lookup lookup = cache.lookup(bytes, baseUrl, metrics);
+        if (lookup.entry() != null) {
+            return cached(lookup.entry(), baseUrl, metrics);
+        }
+        if (streaming) {
+            return streamed(bytes, baseUrl, metrics, cache.writer(lookup.key()));
+        }
+        String xml = new String(bytes.array(), StandardCharsets.UTF_8);
+
+        stage(1, "Nettoyage et includes…");
+        FxmlSanitizer.Prepared prepared = FxmlSanitizer.prepare(xml, baseUrl, path.toUri().toURL(), metrics);
+        cache.store(lookup.key(), prepared);
+
+        stage(2, "Construction des nœuds…");
+        Parent root = build(prepared, baseUrl, metrics);
+
+        stage(STAGES, "Affichage…");
+        return new Loaded(root, prepared.includes(), prepared.stylesheets(), metrics);
+    }
+
+    private Parent build(FxmlSanitizer.Prepared prepared, URL baseUrl, LoadMetrics metrics) throws Exception {
+        try {
+            return lazy
+                    ? Launcher.loadLazy(prepared, baseUrl, metrics)
+                    : Launcher.loadPrepared(prepared, baseUrl, metrics);
+        } catch (IOException | RuntimeException e) {
+            if (!requiresFxThread(e)) throw e;
+            return onFxThread(() -> lazy
+                    ? Launcher.loadLazy(prepared, baseUrl, metrics)
+                    : Launcher.loadPrepared(prepared, baseUrl, metrics));
+        }
+    }
+
+    private Loaded cached(PreviewCache.Entry entry, URL baseUrl, LoadMetrics metrics) throws Exception {
+        stage(2, "Construction des nœuds (aperçu en cache)…");
+        if (lazy) {
+            // Le découpage a besoin du texte: l'entrée est décodée plutôt que lue en flux
+            String fxml = StandardCharsets.UTF_8.decode(entry.fxml().duplicate()).toString();
+            metrics.outputChars = fxml.length();
+            metrics.distinctIncludes = entry.includes().size();
+            metrics.stylesheets = entry.stylesheets().size();
+            Parent root = build(new FxmlSanitizer.Prepared(fxml, entry.stylesheets(), entry.includes(),
+                    entry.includeHashes()), baseUrl, metrics);
+            stage(STAGES, "Affichage…");
+            return new Loaded(root, entry.includes(), entry.stylesheets(), metrics);
+        }
+        Parent root;
+        try {
+            root = Launcher.loadCached(entry, baseUrl, metrics);
+        } catch (IOException | RuntimeException e) {
+            if (!requiresFxThread(e)) throw e;
+            root = onFxThread(() -> Launcher.loadCached(entry, baseUrl, metrics));
+        }
+        stage(STAGES, "Affichage…");
+        return new Loaded(root, entry.includes(), entry.stylesheets(), metrics);
+    }
+
+    /**
+     * Gros fichiers: nettoyage, includes et construction des nœuds en un seul passage,
+     * le fichier étant lu en flux (voir {@link SanitizingInputStream}). Le document
+     * produit est recopié au passage dans copy (entrée de {@link PreviewCache}) s'il
+     * n'est pas null.
+     */
+    private Loaded streamed(ByteBuffer bytes, URL baseUrl, LoadMetrics metrics, PreviewCache.Writer copy)
+            throws Exception {
+        URL documentUrl = path.toUri().toURL();
+        SanitizingInputStream in = SanitizingInputStream.open(bytes, baseUrl, documentUrl, metrics).copyingTo(copy);
+        stage(1, "Nettoyage et construction des nœuds (flux)…");
+        Parent root;
+        try {
+            root = Launcher.loadStreaming(in, baseUrl, metrics);
+        } catch (IOException | RuntimeException e) {
+            if (copy != null) copy.abort();
+            if (!requiresFxThread(e)) throw e;
+            // Le flux a été consommé: on le rejoue sur le thread JavaFX, sans recopie
+            in = SanitizingInputStream.open(bytes, baseUrl, documentUrl, metrics);
+            SanitizingInputStream replay = in;
+            root = onFxThread(() -> Launcher.loadStreaming(replay, baseUrl, metrics));
+            copy = null;
+        }
+        if (copy != null) {
+            if (in.complete()) copy.commit(in.stylesheets(), in.includes(), in.includeHashes());
+            else copy.abort();
+        }
+        stage(STAGES, "Affichage…");
+        return new Loaded(root, in.includes(), in.stylesheets(), metrics);
+    }
+
+    /** Lecture du fichier en UTF-8, mesurée (étape READ). */
+    static String read(Path path, LoadMetrics metrics) throws IOException {
+        return new String(readBytes(path, metrics), StandardCharsets.UTF_8);
+    }
+
+    /** Lecture du fichier, mesurée (étape READ). */
+    static byte[] readBytes(Path path, LoadMetrics metrics) throws IOException {
+        LoadEvents.Read event = new LoadEvents.Read();
+        event.begin();
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(path);
+        metrics.bytesRead = bytes.length;
+        metrics.stage(LoadMetrics.Stage.READ, System.nanoTime() - start);
+        event.document = metrics.document;
+        event.bytes = bytes.length;
+        event.commit();
+        return bytes;
+    }
+
+    private void stage(int done, String message) {
+        if (isCancelled()) throw new CancellationException();
+        // Progression d'abord: l'écouteur du message lit l'étape dans getProgress()
+        updateProgress(done, STAGES);
+        updateMessage(message);
+    }
+
+    static boolean requiresFxThread(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof IllegalStateException && String.valueOf(t.getMessage()).contains("FX application thread")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static <T> T onFxThread(java.util.concurrent.Callable<T> work) throws Exception {
+        FutureTask<T> future = new FutureTask<>(work);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
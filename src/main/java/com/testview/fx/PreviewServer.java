@@ -0,0 +1,673 @@
+package com.testview.fx;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mode --serve: serveur HTTP local qui rend des FXML en PNG à la demande.
+ *
+ * POST /render avec le FXML en corps (relatifs résolus depuis ?base=&lt;dossier&gt;,
+ * à défaut le dossier courant), ou POST /render?path=&lt;fichier.fxml&gt; sans corps.
+ * Réponse: l'image PNG, avec les durées par étape dans l'en-tête Server-Timing
+ * (prepare, queue: attentes cumulées, render, encode, total) et X-Cache (hit/miss). GET /metrics
+ * donne les compteurs du serveur et les statistiques de chargement en JSON.
+ * N'écoute que sur l'interface locale (loopback). Une page web ouverte dans un
+ * navigateur peut pourtant y envoyer un POST (?path= lit n'importe quel fichier) ou,
+ * par rebinding DNS, lire les réponses: toute requête qui porte un en-tête Origin ou
+ * Sec-Fetch-Site (ajoutés par les navigateurs, jamais par curl ni par --loadgen), ou
+ * dont l'en-tête Host n'est pas une adresse locale, est refusée (403).
+ *
+ * Pipeline:
+ *  - admission: au-delà de --threads + --queue documents en cours, une requête à
+ *    rendre est refusée tout de suite (503, Retry-After) plutôt que d'attendre sans
+ *    fin; les réponses servies par le cache ne sont jamais refusées;
+ *  - --threads requêtes au plus lisent, nettoient et construisent leur graphe de
+ *    nœuds en même temps, comme le rendu par lots; les autres attendent leur tour;
+ *  - le rendu passe par une file bornée (--queue);
+ *  - un ordonnanceur vide la file par lots de {@link #FX_BATCH} au plus, un lot à la
+ *    fois sur le thread JavaFX: scène, CSS, layout, snapshot. Une requête dont le
+ *    délai (--timeout) est dépassé avant son tour n'est pas rendue (504);
+ *  - l'encodage PNG se fait sur le thread de la requête.
+ *
+ * Les PNG sont gardés en mémoire sous l'empreinte du contenu (document et base,
+ * {@link PreviewCache#key}); une entrée n'est resservie que si toutes ses dépendances
+ * ont toujours la même empreinte: includes (contenu inliné lors de la préparation),
+ * feuilles de style (empreinte prise avant le rendu) et images affichées. Une image
+ * dont la date ne permet pas d'affirmer qu'elle n'a pas changé depuis le début de la
+ * requête rend le PNG non réutilisable: il est servi mais pas gardé. Des requêtes
+ * identiques simultanées partagent le même rendu. Taille du cache:
+ * testview.server.cacheBytes (256 Mo par défaut).
+ *
+ * Utilisation: --serve [--port N] [--threads N] [--queue N] [--timeout ms]
+ */
+final class PreviewServer {
+
+    static final int DEFAULT_PORT = 8765;
+    /** Nombre maximal d'écrans rendus par passage sur le thread JavaFX. */
+    static final int FX_BATCH = 16;
+    /** Taille maximale d'un document envoyé. */
+    private static final int MAX_BODY = 64 * 1024 * 1024;
+    private static final long CACHE_BYTES = Long.getLong("testview.server.cacheBytes", 256L * 1024 * 1024);
+
+    /**
+     * Rendu servi: PNG, dimensions, empreintes des dépendances (null: rendu à ne pas
+     * garder en cache) et durées (ns).
+     */
+    record Rendered(byte[] png, int width, int height, Map<URL, byte[]> dependencies,
+                    long prepareNanos, long queueNanos, long renderNanos, long encodeNanos) {}
+
+    /** Requête à rendre sur le thread JavaFX. */
+    private static final class RenderJob {
+        final Parent root;
+        final FxmlSanitizer.Prepared prepared;
+        final URL baseUrl;
+        final LoadMetrics metrics;
+        final long deadline;
+        final long queued = System.nanoTime();
+        final CompletableFuture<int[]> pixels = new CompletableFuture<>();
+        volatile long started;
+        int width;
+        int height;
+        // Images affichées par le rendu (thread JavaFX, lues après pixels)
+        Set<Image> images = Set.of();
+
+        RenderJob(Parent root, FxmlSanitizer.Prepared prepared, URL baseUrl, LoadMetrics metrics, long deadline) {
+            this.root = root;
+            this.prepared = prepared;
+            this.baseUrl = baseUrl;
+            this.metrics = metrics;
+            this.deadline = deadline;
+        }
+    }
+
+    /** Réponse d'erreur HTTP. */
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final int port;
+    private final int threads;
+    private final long timeoutNanos;
+    private final BlockingQueue<RenderJob> queue;
+    /** Documents admis, en cours de préparation ou de rendu. */
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int capacity;
+    private final Semaphore preparing;
+
+    private final LinkedHashMap<String, Rendered> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+    private final Map<String, CompletableFuture<Rendered>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final LatencyWindow latencies = new LatencyWindow(4096);
+
+    PreviewServer(int port, int threads, int queueSize, long timeoutMillis) {
+        this.port = port;
+        this.threads = threads;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.capacity = threads + queueSize;
+        this.preparing = new Semaphore(threads);
+    }
+
+    /** Point d'entrée du mode --serve; ne rend la main qu'en cas d'erreur de démarrage. */
+    static int run(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        long timeout = 10_000;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--queue" -> queue = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--timeout" -> timeout = Math.max(1, Long.parseLong(args[++i]));
+                    default -> throw new IllegalArgumentException("Argument inattendu: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --serve [--port N] [--threads N] [--queue N] [--timeout ms]");
+            return 2;
+        }
+        if (queue < 0) queue = 4 * FX_BATCH;
+        try {
+            new PreviewServer(port, threads, queue, timeout).start();
+            Thread.currentThread().join();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur: " + e.getMessage());
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /** Démarre JavaFX sans affichage, l'ordonnanceur puis le serveur; retourne le port d'écoute. */
+    int start() throws IOException {
+        BatchRenderer.startHeadlessToolkit();
+        // Le snapshot suit immédiatement le chargement: images décodées sur place
+        AssetCache.shared().setBackgroundDecoding(false);
+
+        Thread scheduler = new Thread(this::schedule, "fxml-render-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        // Threads d'échange seulement: le travail est borné par l'admission et preparing
+        server.setExecutor(Executors.newCachedThreadPool(BatchRenderer.daemon("fxml-serve-")));
+        server.createContext("/render", this::handleRender);
+        server.createContext("/metrics", this::handleMetrics);
+        server.start();
+        int bound = server.getAddress().getPort();
+        System.out.printf("Serveur d'aperçus sur http://127.0.0.1:%d/render (%d threads, file %d, délai %d ms)%n",
+                bound, threads, queue.remainingCapacity(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        return bound;
+    }
+
+    // --- Requêtes ---
+
+    private void handleRender(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        try {
+            checkLocal(exchange);
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                throw new HttpError(405, "POST attendu");
+            }
+            Map<String, String> query = query(exchange.getRequestURI());
+            byte[] body = readBody(exchange.getRequestBody());
+            URL baseUrl;
+            URL documentUrl = null;
+            String document;
+            if (query.containsKey("path")) {
+                Path file = Path.of(query.get("path")).toAbsolutePath().normalize();
+                if (!Files.isRegularFile(file)) throw new HttpError(404, "Fichier introuvable: " + file);
+                body = Files.readAllBytes(file);
+                baseUrl = Launcher.toBaseUrl(file.toFile());
+                documentUrl = file.toUri().toURL();
+                document = file.toString();
+            } else {
+                if (body.length == 0) throw new HttpError(400, "Corps vide: FXML ou ?path= attendu");
+                Path base = Path.of(query.getOrDefault("base", ".")).toAbsolutePath().normalize();
+                baseUrl = base.toUri().toURL();
+                document = "POST " + base;
+            }
+
+            String key = PreviewCache.key(ByteBuffer.wrap(body), baseUrl);
+            Rendered result = cached(key);
+            boolean hit = result != null;
+            if (hit) {
+                hits.incrementAndGet();
+            } else {
+                if (admitted.incrementAndGet() > capacity) {
+                    admitted.decrementAndGet();
+                    throw new HttpError(503, "Serveur saturé (" + capacity + " documents en cours)");
+                }
+                try {
+                    result = renderShared(key, body, baseUrl, documentUrl, document, start);
+                } finally {
+                    admitted.decrementAndGet();
+                }
+            }
+            respond(exchange, result, hit, System.nanoTime() - start);
+            latencies.add(System.nanoTime() - start);
+        } catch (HttpError e) {
+            if (e.status == 503) rejected.incrementAndGet();
+            else if (e.status == 504) timeouts.incrementAndGet();
+            else failures.incrementAndGet();
+            error(exchange, e.status, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            error(exchange, 500, BatchRenderer.describe(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Rendu d'un document absent du cache; les requêtes identiques simultanées attendent le même. */
+    private Rendered renderShared(String key, byte[] body, URL baseUrl, URL documentUrl, String document, long start)
+            throws HttpError {
+        CompletableFuture<Rendered> mine = new CompletableFuture<>();
+        CompletableFuture<Rendered> shared = inFlight.putIfAbsent(key, mine);
+        if (shared == null) {
+            try {
+                Rendered result = render(body, baseUrl, documentUrl, document, start);
+                if (result.dependencies() != null) store(key, result);
+                mine.complete(result);
+                return result;
+            } catch (HttpError | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+        try {
+            return shared.get(Math.max(0, start + timeoutNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new HttpError(504, "Délai dépassé");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Interrompu");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpError error) throw new HttpError(error.status, error.getMessage());
+            throw new HttpError(500, BatchRenderer.describe(e.getCause()));
+        }
+    }
+
+    /** Nettoyage et graphe de nœuds (thread de la requête), rendu (ordonnanceur), encodage PNG. */
+    private Rendered render(byte[] body, URL baseUrl, URL documentUrl, String document, long start)
+            throws HttpError {
+        long deadline = start + timeoutNanos;
+        LoadMetrics metrics = new LoadMetrics(document);
+        long waitStart = System.nanoTime();
+        try {
+            if (!preparing.tryAcquire(Math.max(0, deadline - waitStart), TimeUnit.NANOSECONDS)) {
+                throw new HttpError(504, "Délai dépassé en attente d'un thread de préparation");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Interrompu");
+        }
+        long t0 = System.nanoTime();
+        long waitNanos = t0 - waitStart;
+        // Début de la requête en heure murale, comparable aux dates des fichiers
+        long since = System.currentTimeMillis();
+        FxmlSanitizer.Prepared prepared;
+        Map<URL, byte[]> dependencies = new LinkedHashMap<>();
+        Parent root = null;
+        try {
+            prepared = FxmlSanitizer.prepare(new String(body, StandardCharsets.UTF_8), baseUrl, documentUrl, metrics);
+            for (URL include : prepared.includes()) {
+                dependencies.put(include, prepared.includeHashes().get(include.toExternalForm()));
+            }
+            // Avant le rendu qui les lit: une modification ultérieure ne fait que périmer l'entrée
+            for (String css : prepared.stylesheets()) {
+                URL url = url(css);
+                if (url != null) dependencies.put(url, FragmentCache.shared().contentHash(url));
+            }
+            try {
+                root = Launcher.loadPrepared(prepared, baseUrl, metrics);
+                if (root == null) throw new HttpError(422, "Document vide");
+            } catch (IOException | RuntimeException e) {
+                // Élément exigeant le thread JavaFX: chargé au moment du rendu
+                if (!PreviewLoadTask.requiresFxThread(e)) throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new HttpError(422, "FXML illisible: " + BatchRenderer.describe(e));
+        } finally {
+            preparing.release();
+        }
+        long prepareNanos = System.nanoTime() - t0;
+
+        RenderJob job = new RenderJob(root, prepared, baseUrl, metrics, deadline);
+        if (!queue.offer(job)) {
+            throw new HttpError(503, "File de rendu pleine (" + queue.size() + " en attente)");
+        }
+        int[] argb;
+        try {
+            argb = job.pixels.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            job.pixels.cancel(false);
+            throw new HttpError(504, "Délai dépassé (" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Interrompu");
+        } catch (CancellationException e) {
+            throw new HttpError(504, "Délai dépassé avant le rendu");
+        } catch (ExecutionException e) {
+            throw new HttpError(422, "Rendu impossible: " + BatchRenderer.describe(e.getCause()));
+        }
+        long renderNanos = System.nanoTime() - job.started;
+        long queueNanos = waitNanos + job.started - job.queued;
+
+        long t1 = System.nanoTime();
+        ByteArrayOutputStream png = new ByteArrayOutputStream(64 * 1024);
+        try {
+            PngWriter.write(argb, job.width, job.height, png);
+        } catch (IOException e) {
+            throw new HttpError(500, "Encodage PNG: " + e.getMessage());
+        }
+        long encodeNanos = System.nanoTime() - t1;
+        rendered.incrementAndGet();
+
+        // Images décodées pendant le rendu: gardées seulement si inchangées depuis le début de la requête
+        for (Image image : job.images) {
+            URL url = image.getUrl() != null ? url(image.getUrl()) : null;
+            if (url == null) continue;
+            if (!FragmentCache.unchangedSince(url, since)) {
+                dependencies = null;
+                break;
+            }
+            dependencies.put(url, FragmentCache.shared().contentHash(url));
+        }
+        return new Rendered(png.toByteArray(), job.width, job.height, dependencies,
+                prepareNanos, queueNanos, renderNanos, encodeNanos);
+    }
+
+    private static URL url(String spec) {
+        try {
+            return new URL(AssetCache.withoutQuery(spec));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // --- Ordonnanceur ---
+
+    /**
+     * Vide la file par lots: le premier travail attendu, puis tout ce qui est déjà là
+     * (FX_BATCH au plus), rendus en un seul passage sur le thread JavaFX. Un seul lot
+     * à la fois: le thread JavaFX n'est jamais inondé, la file absorbe les pointes.
+     */
+    private void schedule() {
+        List<RenderJob> batch = new ArrayList<>(FX_BATCH);
+        while (true) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, FX_BATCH - 1);
+            long now = System.nanoTime();
+            batch.removeIf(job -> {
+                if (job.pixels.isDone()) return true;
+                if (now - job.deadline > 0) {
+                    job.pixels.cancel(false);
+                    return true;
+                }
+                return false;
+            });
+            if (batch.isEmpty()) continue;
+            batches.incrementAndGet();
+            List<RenderJob> ready = List.copyOf(batch);
+            try {
+                PreviewLoadTask.onFxThread(() -> {
+                    for (RenderJob job : ready) snapshot(job);
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                for (RenderJob job : ready) job.pixels.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Scène, CSS, layout et snapshot (thread JavaFX). */
+    private static void snapshot(RenderJob job) {
+        job.started = System.nanoTime();
+        Scene scene = null;
+        try {
+            Parent root = job.root != null ? job.root : Launcher.loadPrepared(job.prepared, job.baseUrl, job.metrics);
+            scene = new Scene(root);
+            WritableImage image = root.snapshot(null, null);
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
+            if (width <= 0 || height <= 0) throw new IllegalStateException("Rendu vide (" + width + "x" + height + ")");
+            int[] argb = new int[width * height];
+            image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+            job.width = width;
+            job.height = height;
+            job.images = AssetCache.images(root);
+            job.pixels.complete(argb);
+        } catch (Exception | LinkageError e) {
+            job.pixels.completeExceptionally(e);
+        } finally {
+            // Détacher la racine fait oublier ses feuilles à StyleManager, qui purge alors les
+            // images qu'elles citent: un fond modifié sur disque sera relu au prochain rendu
+            if (scene != null) scene.setRoot(new Group());
+        }
+    }
+
+    // --- Cache ---
+
+    /** PNG déjà rendu pour ce contenu, si aucune de ses dépendances n'a changé depuis. */
+    private Rendered cached(String key) {
+        Rendered result;
+        synchronized (cache) {
+            result = cache.get(key);
+        }
+        if (result == null) return null;
+        for (Map.Entry<URL, byte[]> dependency : result.dependencies().entrySet()) {
+            if (!Arrays.equals(dependency.getValue(), FragmentCache.shared().contentHash(dependency.getKey()))) {
+                synchronized (cache) {
+                    if (cache.remove(key) != null) cacheBytes -= result.png().length;
+                }
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private void store(String key, Rendered result) {
+        synchronized (cache) {
+            Rendered previous = cache.put(key, result);
+            if (previous != null) cacheBytes -= previous.png().length;
+            cacheBytes += result.png().length;
+            Iterator<Map.Entry<String, Rendered>> it = cache.entrySet().iterator();
+            while (cacheBytes > CACHE_BYTES && cache.size() > 1 && it.hasNext()) {
+                cacheBytes -= it.next().getValue().png().length;
+                it.remove();
+            }
+        }
+    }
+
+    // --- Réponses ---
+
+    private static void respond(HttpExchange exchange, Rendered result, boolean hit, long totalNanos)
+            throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "image/png");
+        headers.set("X-Cache", hit ? "hit" : "miss");
+        headers.set("X-Image-Size", result.width() + "x" + result.height());
+        headers.set("Server-Timing", hit
+                ? timing("total", totalNanos)
+                : String.join(", ", timing("prepare", result.prepareNanos()), timing("queue", result.queueNanos()),
+                        timing("render", result.renderNanos()), timing("encode", result.encodeNanos()),
+                        timing("total", totalNanos)));
+        exchange.sendResponseHeaders(200, result.png().length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(result.png());
+        }
+    }
+
+    private static String timing(String name, long nanos) {
+        return String.format(Locale.ROOT, "%s;dur=%.2f", name, nanos / 1e6);
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (status == 503) exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                checkLocal(exchange);
+            } catch (HttpError e) {
+                error(exchange, e.status, e.getMessage());
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            JsonWriter json = new JsonWriter(sb);
+            long cached;
+            long bytes;
+            synchronized (cache) {
+                cached = cache.size();
+                bytes = cacheBytes;
+            }
+            json.beginObject()
+                    .name("requests").value(requests.get())
+                    .name("cacheHits").value(hits.get())
+                    .name("rendered").value(rendered.get())
+                    .name("rejected").value(rejected.get())
+                    .name("timeouts").value(timeouts.get())
+                    .name("failures").value(failures.get())
+                    .name("batches").value(batches.get())
+                    .name("inProgress").value(admitted.get())
+                    .name("queued").value(queue.size())
+                    .name("cachedImages").value(cached)
+                    .name("cacheBytes").value(bytes)
+                    .name("latencyMs");
+            latencies.writeJson(json);
+            json.name("stages");
+            MetricsRegistry.shared().writeStats(json);
+            json.endObject();
+            byte[] out = sb.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, out.length);
+            try (OutputStream o = exchange.getResponseBody()) {
+                o.write(out);
+            }
+        }
+    }
+
+    /** Refuse les requêtes venues d'un navigateur ou adressées à un autre nom que l'interface locale. */
+    private static void checkLocal(HttpExchange exchange) throws HttpError {
+        Headers headers = exchange.getRequestHeaders();
+        if (headers.containsKey("Origin") || headers.containsKey("Sec-Fetch-Site")) {
+            throw new HttpError(403, "Requête de navigateur refusée");
+        }
+        String host = headers.getFirst("Host");
+        if (host == null || !isLoopbackHost(host)) {
+            throw new HttpError(403, "Hôte non local refusé: " + host);
+        }
+    }
+
+    /** En-tête Host désignant l'interface locale: localhost, 127.x.x.x ou [::1], port facultatif. */
+    private static boolean isLoopbackHost(String host) {
+        String name = host.trim().toLowerCase(Locale.ROOT);
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            if (end < 0) return false;
+            name = name.substring(1, end);
+            return name.equals("::1") || name.equals("0:0:0:0:0:0:0:1");
+        }
+        int colon = name.indexOf(':');
+        if (colon >= 0) name = name.substring(0, colon);
+        return name.equals("localhost") || name.matches("127(\\.\\d{1,3}){3}");
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException, HttpError {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        if (body.length > MAX_BODY) throw new HttpError(413, "Document trop gros (max " + MAX_BODY + " octets)");
+        return body;
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /** Latences des dernières requêtes servies, pour les centiles de /metrics. */
+    static final class LatencyWindow {
+        private final long[] nanos;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size) {
+            nanos = new long[size];
+        }
+
+        synchronized void add(long value) {
+            nanos[next] = value;
+            next = (next + 1) % nanos.length;
+            count = Math.min(count + 1, nanos.length);
+        }
+
+        void writeJson(JsonWriter json) {
+            long[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(nanos, count);
+            }
+            Arrays.sort(sorted);
+            json.beginObject().name("samples").value(sorted.length);
+            if (sorted.length > 0) {
+                json.name("p50").value(percentile(sorted, 0.50) / 1e6)
+                        .name("p90").value(percentile(sorted, 0.90) / 1e6)
+                        .name("p99").value(percentile(sorted, 0.99) / 1e6)
+                        .name("max").value(sorted[sorted.length - 1] / 1e6);
+            }
+            json.endObject();
+        }
+
+        /** Centile par rang le plus proche d'un tableau trié non vide. */
+        static long percentile(long[] sorted, double p) {
+            int rank = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+    }
+}
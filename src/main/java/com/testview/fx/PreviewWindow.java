@@ -0,0 +1,227 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Fenêtre d'aperçu d'un fichier FXML, avec rechargement à chaud optionnel.
+ *
+ * En mode rechargement, le fichier racine, chaque fichier inliné via fx:include et
+ * chaque feuille de style locale sont surveillés ({@link FileWatcher}). Si seules des
+ * feuilles de style ont changé, elles sont réappliquées sans recharger le FXML; sinon
+ * le document est rechargé en arrière-plan (seuls les fragments modifiés sont
+ * re-nettoyés, les autres viennent de {@link FragmentCache}) et la racine de la
+ * Scene est remplacée sur place: la fenêtre garde sa position et sa taille.
+ *
+ * Le titre affiche les mesures du dernier chargement ({@link LoadMetrics}), premier
+ * rendu compris: durée entre show() (ou le remplacement de la racine) et la fin du
+ * premier pulse CSS + layout.
+ *
+ * Le profil layout/CSS ({@link LayoutProfiler}) s'active et se coupe à chaud; il
+ * suit les rechargements.
+ *
+ * Toutes les méthodes s'exécutent sur le thread JavaFX, sauf indication contraire.
+ */
+final class PreviewWindow {
+
+    private final Path path;
+    private final Stage stage;
+    private final Executor executor;
+    private final Consumer<String> status;
+
+    private PreviewLoadTask.Loaded loaded;
+    private FileWatcher.Subscription subscription;
+    private PreviewLoadTask reloading;
+    private boolean liveReload;
+    // Mode de chargement différé des prochains rechargements (voir LazyFxml)
+    private boolean lazy;
+    // Profil layout/CSS en cours, null si désactivé
+    private LayoutProfiler profiler;
+
+    PreviewWindow(Stage owner, Path path, PreviewLoadTask.Loaded loaded, Executor executor, Consumer<String> status) {
+        this.path = path;
+        this.loaded = loaded;
+        this.executor = executor;
+        this.status = status;
+        this.stage = new Stage();
+        updateTitle();
+        stage.initOwner(owner);
+        stage.setScene(new Scene(loaded.root()));
+        stage.setOnHidden(e -> {
+            setLiveReload(false);
+            setProfiling(false);
+        });
+    }
+
+    Stage stage() {
+        return stage;
+    }
+
+    void show() {
+        measureFirstPulse();
+        stage.show();
+    }
+
+    LoadMetrics metrics() {
+        return loaded.metrics();
+    }
+
+    /** Mesure jusqu'à la fin du prochain pulse de layout, puis met à jour le titre. */
+    private void measureFirstPulse() {
+        Scene scene = stage.getScene();
+        LoadMetrics metrics = loaded.metrics();
+        LoadEvents.FirstPulse event = new LoadEvents.FirstPulse();
+        event.begin();
+        long start = System.nanoTime();
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            metrics.stage(LoadMetrics.Stage.FIRST_PULSE, System.nanoTime() - start);
+            event.document = metrics.document;
+            event.commit();
+            if (loaded.metrics() == metrics) updateTitle();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    private void updateTitle() {
+        stage.setTitle("Aperçu FXML - " + path.getFileName() + " — " + loaded.metrics().summary());
+    }
+
+    void setLiveReload(boolean enabled) {
+        if (enabled == liveReload) return;
+        liveReload = enabled;
+        if (enabled) {
+            watchDependencies();
+        } else {
+            if (subscription != null) subscription.close();
+            subscription = null;
+            if (reloading != null) reloading.cancel(true);
+        }
+    }
+
+    void setLazy(boolean enabled) {
+        lazy = enabled;
+    }
+
+    /** Active ou coupe le profil layout/CSS (carte de chaleur et table des conteneurs). */
+    void setProfiling(boolean enabled) {
+        if (enabled == (profiler != null)) return;
+        if (enabled) {
+            profiler = new LayoutProfiler(stage, path.getFileName().toString(), status, () -> setProfiling(false));
+            profiler.start(loaded.root());
+            profiler.showTable();
+        } else {
+            LayoutProfiler stopped = profiler;
+            profiler = null;
+            stopped.stop();
+        }
+    }
+
+    private void watchDependencies() {
+        if (subscription != null) subscription.close();
+        Set<Path> files = new LinkedHashSet<>();
+        files.add(path);
+        for (URL url : loaded.includes()) {
+            Path p = toPath(url.toString());
+            if (p != null) files.add(p);
+        }
+        for (String css : loaded.stylesheets()) {
+            Path p = toPath(css);
+            if (p != null) files.add(p);
+        }
+        try {
+            subscription = FileWatcher.shared().watch(files, this::onChanged);
+        } catch (IOException e) {
+            status.accept("Surveillance impossible pour " + path.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Appelé par le FileWatcher, hors du thread JavaFX. */
+    private void onChanged(Set<Path> changed) {
+        long start = System.nanoTime();
+        Platform.runLater(() -> {
+            if (!liveReload) return;
+            Set<Path> stylesheets = new LinkedHashSet<>();
+            for (String css : loaded.stylesheets()) {
+                Path p = toPath(css);
+                if (p != null) stylesheets.add(p);
+            }
+            if (stylesheets.containsAll(changed)) {
+                reapplyStylesheets(changed);
+                report("styles rechargés", start);
+            } else {
+                reload(changed, start);
+            }
+        });
+    }
+
+    private void reload(Set<Path> changed, long start) {
+        if (reloading != null) reloading.cancel(true);
+        PreviewLoadTask task = new PreviewLoadTask(path, lazy);
+        reloading = task;
+        task.setOnSucceeded(e -> {
+            if (reloading != task) return;
+            reloading = null;
+            loaded = task.getValue();
+            measureFirstPulse();
+            if (profiler != null) profiler.setRoot(loaded.root());
+            else stage.getScene().setRoot(loaded.root());
+            updateTitle();
+            // Les feuilles modifiées peuvent être encore en cache chez StyleManager
+            reapplyStylesheets(changed);
+            watchDependencies();
+            report("rechargé", start);
+        });
+        task.setOnFailed(e -> {
+            if (reloading == task) reloading = null;
+            // On garde l'aperçu précédent: le fichier est peut-être en cours d'édition
+            status.accept("Rechargement échoué (" + path.getFileName() + "): " + task.getException().getMessage());
+        });
+        executor.execute(task);
+    }
+
+    /**
+     * Force la relecture des feuilles modifiées: StyleManager met en cache les feuilles
+     * par URL, on prend donc la nouvelle version de l'URL des fichiers concernés
+     * (voir {@link AssetCache#stylesheet}), la même pour toutes les fenêtres.
+     */
+    private void reapplyStylesheets(Set<Path> changed) {
+        Parent root = loaded.root();
+        List<String> sheets = root.getStylesheets();
+        for (int i = 0; i < sheets.size(); i++) {
+            Path p = toPath(sheets.get(i));
+            if (p != null && changed.contains(p)) {
+                sheets.set(i, AssetCache.stylesheet(AssetCache.withoutQuery(sheets.get(i))));
+            }
+        }
+    }
+
+    private void report(String what, long start) {
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        status.accept(path.getFileName() + " " + what + " en " + ms + " ms");
+    }
+
+    /** Chemin local d'une URL file: (paramètres ignorés), null pour toute autre URL. */
+    static Path toPath(String url) {
+        try {
+            URI uri = new URI(AssetCache.withoutQuery(url));
+            if (!"file".equalsIgnoreCase(uri.getScheme())) return null;
+            return Path.of(uri).toAbsolutePath().normalize();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
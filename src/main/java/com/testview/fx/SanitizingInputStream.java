@@ -0,0 +1,267 @@
+package com.testview.fx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chargement en flux d'un fichier FXML: le document nettoyé est produit au fur et à
+ * mesure que FXMLLoader le lit, sans jamais exister en entier en mémoire.
+ *
+ * Le fichier est mappé en mémoire (hors tas) et lu comme une vue d'octets
+ * ({@link ByteChars}); {@link FxmlRewriter} le réécrit jeton par jeton dans un petit
+ * tampon, livré à FXMLLoader par read(). Les includes sont inlinés à leur place
+ * (fragments de {@link FragmentCache}, préchargés en parallèle comme d'habitude);
+ * les stylesheets sont retirées et collectées au passage.
+ *
+ * Mémoire de tas utilisée par le chemin de chargement (hors graphe de nœuds produit
+ * et hors cache de fragments): environ {@link #CHUNK} octets, plus le plus gros bloc
+ * stylesheets et le plus gros sous-arbre inclus; elle ne dépend pas de la taille du
+ * fichier racine. À comparer au chemin par chaînes (readString, texte nettoyé,
+ * document assemblé, getBytes), qui alloue environ 8,5 octets de tas par octet de
+ * fichier (mesuré sur un document de 20 Mo: ~20 Ko en flux mappé).
+ *
+ * Utilisé pour les fichiers d'au moins testview.load.streamingThreshold octets
+ * (4 Mo par défaut; 0 = toujours, valeur négative = jamais). Sous Windows, un fichier
+ * mappé ne peut pas être remplacé tant que le mappage vit: il est alors lu par
+ * FileChannel dans un tampon (un octet de tas par octet de fichier), ce que
+ * -Dtestview.load.mmap=true|false permet de forcer.
+ */
+final class SanitizingInputStream extends InputStream {
+
+    static final long STREAMING_THRESHOLD = Long.getLong("testview.load.streamingThreshold", 4L * 1024 * 1024);
+    static final boolean MMAP = Boolean.parseBoolean(System.getProperty("testview.load.mmap",
+            String.valueOf(!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows"))));
+
+    /** Taille visée du tampon de sortie entre deux lectures de FXMLLoader. */
+    static final int CHUNK = 16 * 1024;
+
+    private final LoadMetrics metrics;
+    private final FxmlSanitizer.Assembly assembly;
+    private final StringBuilder pending = new StringBuilder(CHUNK + 1024);
+    private final long sourceBytes;
+    private final LoadEvents.Sanitize event = new LoadEvents.Sanitize();
+    private FxmlRewriter.Pass pass;
+    private int pendingPos;
+    private boolean eof;
+    private boolean complete;
+    private OutputStream copy;
+    private byte[] copyBuffer;
+    private long delivered;
+    private long rewriteNanos;
+    private long includeNanos;
+
+    private SanitizingInputStream(ByteBuffer bytes, URL baseUrl, URL documentUrl, LoadMetrics metrics) {
+        this.metrics = metrics;
+        this.sourceBytes = bytes.limit();
+        event.begin();
+        ByteChars input = new ByteChars(bytes);
+
+        long start = System.nanoTime();
+        IncludeResolver resolver = IncludeResolver.forSources(baseUrl, includeSources(input), FragmentCache.shared());
+        includeNanos = System.nanoTime() - start;
+
+        assembly = new FxmlSanitizer.Assembly(new ArrayList<>(), resolver, 0);
+        if (documentUrl != null) assembly.ancestors.add(documentUrl.toString());
+        pass = new FxmlRewriter()
+                .readingUtf8Bytes()
+                .disablingLogic()
+                .resolvingAgainst(baseUrl)
+                .collectingStylesheets(assembly.styles)
+                .strippingStylesheets()
+                .inliningIncludes((source, base, out) -> {
+                    long t0 = System.nanoTime();
+                    assembly.include(source, base);
+                    ByteChars.appendUtf8(assembly.out, out);
+                    assembly.out.setLength(0);
+                    includeNanos += System.nanoTime() - t0;
+                })
+                .start(input);
+    }
+
+    /** Utilise-t-on le chargement en flux pour un fichier de cette taille ? */
+    static boolean appliesTo(long size) {
+        return STREAMING_THRESHOLD >= 0 && size >= STREAMING_THRESHOLD;
+    }
+
+    /** Ouvre le fichier (étape READ: mappage ou lecture par canal) et prépare la réécriture. */
+    static SanitizingInputStream open(Path file, URL baseUrl, URL documentUrl, LoadMetrics metrics) throws IOException {
+        return open(read(file, metrics), baseUrl, documentUrl, metrics);
+    }
+
+    /** Prépare la réécriture d'un contenu déjà lu (voir {@link #read(Path, LoadMetrics)}). */
+    static SanitizingInputStream open(ByteBuffer bytes, URL baseUrl, URL documentUrl, LoadMetrics metrics) {
+        return new SanitizingInputStream(bytes, baseUrl, documentUrl, metrics);
+    }
+
+    /** Étape READ du chargement en flux: {@link #map(Path)}, mesuré. */
+    static ByteBuffer read(Path file, LoadMetrics metrics) throws IOException {
+        LoadEvents.Read read = new LoadEvents.Read();
+        read.begin();
+        long start = System.nanoTime();
+        ByteBuffer bytes = map(file);
+        metrics.bytesRead = bytes.limit();
+        metrics.stage(LoadMetrics.Stage.READ, System.nanoTime() - start);
+        read.document = metrics.document;
+        read.bytes = bytes.limit();
+        read.commit();
+        return bytes;
+    }
+
+    /** Contenu du fichier, mappé en mémoire ou, si {@link #MMAP} est faux, lu dans un tampon de tas. */
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Fichier trop volumineux: " + file);
+            if (MMAP) return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // lecture jusqu'à la fin du fichier
+            }
+            return bytes.flip();
+        }
+    }
+
+    /** Sources des fx:include de la racine, pour précharger le graphe avant la lecture. */
+    private static String[] includeSources(ByteChars input) {
+        if (IncludeResolver.PARALLELISM <= 1) return new String[0];
+        List<String> sources = new ArrayList<>();
+        FxmlTokenizer t = new FxmlTokenizer(input);
+        int type;
+        while ((type = t.next()) != FxmlTokenizer.EOF) {
+            if (type != FxmlTokenizer.START_TAG || !t.nameIs("fx:include")) continue;
+            int i = t.findAttribute("source");
+            if (i < 0 || t.attrValueEnd[i] <= t.attrValueStart[i]) continue;
+            String source = ByteChars.decode(input, t.attrValueStart[i], t.attrValueEnd[i]);
+            // Les sources « @relatif » sont résolues pendant la réécriture, pas ici
+            if (!source.startsWith("@")) sources.add(source);
+        }
+        return sources.toArray(new String[0]);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return pending.charAt(pendingPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, deliverable() - pendingPos);
+        for (int i = 0; i < n; i++) {
+            b[off + i] = (byte) pending.charAt(pendingPos + i);
+        }
+        pendingPos += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        // Libère la vue (et donc le mappage, au prochain GC) même si la lecture a été interrompue
+        pass = null;
+        eof = true;
+    }
+
+    /**
+     * Recopie aussi la sortie dans copy, au fil de la lecture (sans la garder en mémoire):
+     * sert à remplir {@link PreviewCache} pendant un chargement en flux.
+     */
+    SanitizingInputStream copyingTo(OutputStream copy) {
+        this.copy = copy;
+        return this;
+    }
+
+    /** Le document a-t-il été produit jusqu'au bout (et donc entièrement recopié) ? */
+    boolean complete() {
+        return complete;
+    }
+
+    /** URLs des feuilles de style collectées, dans l'ordre du document (complètes une fois le flux lu). */
+    List<String> stylesheets() {
+        return assembly.styles;
+    }
+
+    /** URLs des fichiers inclus (complètes une fois le flux lu). */
+    List<URL> includes() {
+        return new ArrayList<>(assembly.includes.values());
+    }
+
+    /** Empreinte du contenu inliné pour chaque include (voir {@link FxmlSanitizer.Prepared#includeHashes}). */
+    java.util.Map<String, byte[]> includeHashes() {
+        return assembly.includeHashes();
+    }
+
+    /** Temps passé à produire le flux (nettoyage + includes), à déduire du temps de FXMLLoader.load. */
+    long processingNanos() {
+        return rewriteNanos + includeNanos;
+    }
+
+    /** Sortie disponible: tout le tampon, sauf un bloc stylesheets encore ouvert (peut-être retiré). */
+    private int deliverable() {
+        int block = pass == null ? -1 : pass.pendingBlockStart();
+        return block >= 0 ? block : pending.length();
+    }
+
+    private boolean fill() throws IOException {
+        if (pendingPos < deliverable()) return true;
+        if (eof) return false;
+        if (pass.pendingBlockStart() < 0) {
+            // Tout a été livré: on réutilise le tampon depuis le début
+            copy(pendingPos);
+            delivered += pendingPos;
+            pending.setLength(0);
+            pendingPos = 0;
+        }
+        long start = System.nanoTime();
+        long includesBefore = includeNanos;
+        while (deliverable() - pendingPos < CHUNK) {
+            if (!pass.step(pending)) {
+                eof = true;
+                break;
+            }
+        }
+        // Le temps des includes est compté à part (callback pendant step)
+        rewriteNanos += System.nanoTime() - start - (includeNanos - includesBefore);
+        if (eof) finish();
+        return pendingPos < deliverable();
+    }
+
+    /** Recopie les n premiers octets du tampon de sortie vers {@link #copy}. */
+    private void copy(int n) throws IOException {
+        if (copy == null) return;
+        if (copyBuffer == null) copyBuffer = new byte[8192];
+        byte[] b = copyBuffer;
+        for (int from = 0; from < n; from += b.length) {
+            int len = Math.min(b.length, n - from);
+            for (int i = 0; i < len; i++) b[i] = (byte) pending.charAt(from + i);
+            copy.write(b, 0, len);
+        }
+    }
+
+    private void finish() throws IOException {
+        pass = null;
+        complete = true;
+        copy(pending.length());
+        metrics.sourceChars = sourceBytes;
+        metrics.outputChars = delivered + pending.length();
+        metrics.includes = assembly.spliced;
+        metrics.distinctIncludes = assembly.includes.size();
+        metrics.includeDepth = assembly.maxDepth;
+        metrics.stylesheets = assembly.styles.size();
+        metrics.stage(LoadMetrics.Stage.SANITIZE, rewriteNanos);
+        metrics.stage(LoadMetrics.Stage.INCLUDES, includeNanos);
+        event.document = metrics.document;
+        event.chars = sourceBytes;
+        event.commit();
+    }
+}
@@ -0,0 +1,121 @@
+package com.testview.fx;
+
+import javafx.scene.Scene;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Temps de démarrage de l'application, du lancement du processus à la première image
+ * de la fenêtre d'accueil.
+ *
+ * Chaque jalon est daté une seule fois (le premier appel compte), en millisecondes
+ * depuis le lancement du processus: lu à la fin seulement, pour ne rien coûter au
+ * démarrage lui-même. La première image est datée à la fin du premier pulse CSS +
+ * layout de la fenêtre d'accueil, juste avant son rendu.
+ *
+ * Reporté dans la barre d'état, dans l'export des métriques, en événement JFR
+ * (com.testview.fx.Startup), et imprimé en JSON par --startup-probe (voir {@link Training}).
+ */
+final class Startup {
+
+    enum Mark {
+        MAIN("main"),
+        TOOLKIT("JavaFX"),
+        SHOWN("fenêtre"),
+        FIRST_FRAME("1re image"),
+        EXAMPLE("exemple");
+
+        final String label;
+        final String key;
+
+        Mark(String label) {
+            this.label = label;
+            this.key = name().toLowerCase(java.util.Locale.ROOT).replace("_f", "F");
+        }
+    }
+
+    private static final long[] MILLIS = new long[Mark.values().length];
+    private static long processStart;
+
+    static {
+        Arrays.fill(MILLIS, -1);
+    }
+
+    private Startup() {}
+
+    /** Date le jalon, s'il ne l'a pas déjà été. */
+    static synchronized void mark(Mark mark) {
+        if (MILLIS[mark.ordinal()] < 0) MILLIS[mark.ordinal()] = System.currentTimeMillis();
+    }
+
+    /**
+     * Date le jalon à la fin du prochain pulse de layout de la scène, puis exécute then
+     * (sur le thread JavaFX; peut être null).
+     */
+    static void markAfterPulse(Scene scene, Mark mark, Runnable then) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            mark(mark);
+            if (mark == Mark.FIRST_FRAME) commitEvent();
+            if (then != null) then.run();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /** Millisecondes entre le lancement du processus et le jalon, -1 s'il n'a pas (encore) eu lieu. */
+    static synchronized long millis(Mark mark) {
+        long at = MILLIS[mark.ordinal()];
+        return at < 0 ? -1 : at - processStart();
+    }
+
+    /** Résumé d'une ligne, ex. « 1re image en 640 ms (main 120 · JavaFX 380 · fenêtre 450) ». */
+    static String summary() {
+        long firstFrame = millis(Mark.FIRST_FRAME);
+        if (firstFrame < 0) return "";
+        StringBuilder sb = new StringBuilder("1re image en ").append(firstFrame).append(" ms (");
+        for (Mark m : new Mark[] {Mark.MAIN, Mark.TOOLKIT, Mark.SHOWN}) {
+            if (m != Mark.MAIN) sb.append(" · ");
+            sb.append(m.label).append(' ').append(millis(m));
+        }
+        return sb.append(')').toString();
+    }
+
+    static void writeJson(JsonWriter json) {
+        json.beginObject();
+        for (Mark m : Mark.values()) {
+            long ms = millis(m);
+            if (ms >= 0) json.name(m.key + "Ms").value(ms);
+        }
+        json.name("sharing").value(String.valueOf(System.getProperty("java.vm.info")).contains("sharing"))
+                .endObject();
+    }
+
+    static String toJson() {
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        writeJson(json);
+        return sb.append('\n').toString();
+    }
+
+    private static void commitEvent() {
+        LoadEvents.Startup event = new LoadEvents.Startup();
+        if (!event.shouldCommit()) return;
+        event.main = millis(Mark.MAIN);
+        event.toolkit = millis(Mark.TOOLKIT);
+        event.shown = millis(Mark.SHOWN);
+        event.firstFrame = millis(Mark.FIRST_FRAME);
+        event.commit();
+    }
+
+    /** Heure de lancement du processus (à défaut, celle de main()). */
+    private static synchronized long processStart() {
+        if (processStart == 0) {
+            processStart = ProcessHandle.current().info().startInstant()
+                    .map(Instant::toEpochMilli)
+                    .orElse(MILLIS[Mark.MAIN.ordinal()]);
+        }
+        return processStart;
+    }
+}
@@ -0,0 +1,329 @@
+package com.testview.fx;
+
+import javafx.application.Platform;
+import javafx.stage.Stage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Mode --train: archive AppCDS entraînée sur l'application, et mesure du démarrage.
+ *
+ * 1. Un processus enfant rejoue un démarrage complet (fenêtre d'accueil, exemple
+ *    embarqué) puis ouvre chaque FXML du corpus, deux fois (préparation puis cache des
+ *    aperçus) et une fois en flux, avec -XX:DumpLoadedClassList: on obtient la liste
+ *    des classes réellement chargées (JavaFX, FXMLLoader, parseur XML, nettoyage...).
+ * 2. Un second enfant en fait une archive CDS (-Xshare:dump), écrite dans un fichier
+ *    temporaire puis renommée.
+ * 3. Des lancements --startup-probe, avant (configuration actuelle) et après, mesurent
+ *    le temps jusqu'à la première image; la médiane de chaque série est affichée (et
+ *    écrite dans --report).
+ *
+ * Depuis l'image jlink (module com.testview.fx), l'archive remplace l'archive CDS par défaut de l'image
+ * (lib/server/classes.jsa), que la JVM charge d'elle-même: bin/app en profite sans
+ * aucune option. Depuis le classpath, elle est écrite dans --archive (app-cds.jsa par
+ * défaut) et s'utilise avec -XX:SharedArchiveFile=..., avec le même classpath.
+ */
+final class Training {
+
+    /** Argument interne: le processus enfant de l'étape 1. */
+    static final String WORKLOAD = "--train-workload";
+    /** Argument de Launcher: imprime les temps de démarrage puis quitte. */
+    static final String PROBE = "--startup-probe";
+
+    private static final String MAIN_CLASS = AppMain.class.getName();
+    private static final long CHILD_TIMEOUT_MINUTES = 10;
+    private static final Pattern FIRST_FRAME = Pattern.compile("\"firstFrameMs\":\\s*(\\d+)");
+
+    private Training() {}
+
+    /** Point d'entrée du mode --train; retourne le code de sortie du processus. */
+    static int run(String[] args) {
+        Path archive = null;
+        Path report = null;
+        int probes = 3;
+        List<String> corpus = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--archive" -> archive = Path.of(args[++i]);
+                    case "--report" -> report = Path.of(args[++i]);
+                    case "--probes" -> probes = Math.max(0, Integer.parseInt(args[++i]));
+                    default -> {
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException("Option inconnue: " + args[i]);
+                        if (!Files.exists(Path.of(args[i]))) throw new IllegalArgumentException("Introuvable: " + args[i]);
+                        corpus.add(Path.of(args[i]).toAbsolutePath().toString());
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        boolean image = runtimeImage();
+        if (!image) {
+            // -Xshare:dump refuse les dossiers de classes non vides dans le classpath
+            for (String entry : System.getProperty("java.class.path").split(java.io.File.pathSeparator)) {
+                if (!entry.isEmpty() && Files.isDirectory(Path.of(entry))) {
+                    return usage("Les archives CDS ne prennent que des JAR: " + entry + " est un dossier"
+                            + " (lancer depuis le JAR de mvn package, ou depuis l'image jlink)");
+                }
+            }
+        }
+        if (archive == null) {
+            archive = image ? Path.of(System.getProperty("java.home"), "lib", "server", "classes.jsa") : Path.of("app-cds.jsa");
+        }
+        archive = archive.toAbsolutePath();
+
+        try {
+            long[] before = probe(probes);
+
+            Path classList = Files.createTempFile("testview-", ".classlist");
+            try {
+                System.out.println("Entraînement sur l'exemple embarqué" + (corpus.isEmpty() ? "" : " et " + corpus.size() + " chemin(s)") + "…");
+                List<String> workload = new ArrayList<>();
+                workload.add(WORKLOAD);
+                workload.addAll(corpus);
+                if (exec(command(List.of("-XX:DumpLoadedClassList=" + classList), workload), false).exit != 0) {
+                    System.err.println("Erreur: l'entraînement a échoué");
+                    return 1;
+                }
+
+                System.out.println("Création de l'archive " + archive + "…");
+                Path temp = Files.createTempFile(archive.getParent(), "classes-", ".jsa.tmp");
+                List<String> dump = new ArrayList<>(List.of("-Xshare:dump",
+                        "-XX:SharedClassListFile=" + classList, "-XX:SharedArchiveFile=" + temp));
+                String module = System.getProperty("jdk.module.main");
+                if (module != null) dump.addAll(List.of("--add-modules", module));
+                if (exec(command(dump, null), false).exit != 0 || Files.size(temp) == 0) {
+                    Files.deleteIfExists(temp);
+                    System.err.println("Erreur: la création de l'archive a échoué");
+                    return 1;
+                }
+                try {
+                    Files.move(temp, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(classList);
+            }
+
+            List<String> use = image ? List.of() : List.of("-XX:SharedArchiveFile=" + archive);
+            long[] after = probe(probes, use);
+            System.out.println("Archive CDS: " + archive + " (" + Files.size(archive) / 1024 + " Ko)");
+            if (!image) System.out.println("À utiliser avec: java -XX:SharedArchiveFile=" + archive + " -cp <même classpath> " + MAIN_CLASS);
+            if (probes > 0) {
+                System.out.println("1re image (médiane de " + probes + " lancements): "
+                        + describe(before) + " avant l'entraînement → " + describe(after) + " après");
+            }
+            if (report != null) writeReport(report, archive, before, after);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private static int usage(String error) {
+        if (error != null) System.err.println(error);
+        System.err.println("Usage: --train [<dossier ou fichier FXML>...] [--archive <fichier.jsa>] [--report <fichier.json>] [--probes N]");
+        return 2;
+    }
+
+    /**
+     * Étape 1, dans le processus enfant: démarrage complet de l'application, puis
+     * ouverture de chaque FXML du corpus. Les échecs sont signalés sans interrompre
+     * l'entraînement (les classes chargées jusque-là comptent quand même).
+     */
+    static int workload(String[] args) {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".fxml"))
+                        .filter(Files::isRegularFile)
+                        .sorted()
+                        .forEach(files::add);
+            } catch (IOException e) {
+                System.err.println("Ignoré: " + path + " (" + e.getMessage() + ")");
+            }
+        }
+        try {
+            Platform.startup(() -> {});
+            Platform.setImplicitExit(false);
+
+            Launcher launcher = new Launcher();
+            CompletableFuture<Stage> welcome = new CompletableFuture<>();
+            Platform.runLater(() -> {
+                try {
+                    Stage stage = new Stage();
+                    launcher.start(stage, List.of());
+                    welcome.complete(stage);
+                } catch (RuntimeException | LinkageError e) {
+                    welcome.completeExceptionally(e);
+                }
+            });
+            Stage stage = welcome.get(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            try {
+                launcher.example.get(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            } catch (Exception e) {
+                System.err.println("Échec: exemple embarqué (" + e.getMessage() + ")");
+            }
+
+            for (Path file : files) {
+                // Deux ouvertures: préparation complète, puis aperçu venu du cache disque
+                for (int pass = 0; pass < 2; pass++) {
+                    CompletableFuture<CompletableFuture<PreviewWindow>> opening = new CompletableFuture<>();
+                    Platform.runLater(() -> opening.complete(launcher.openFileInNewWindow(stage, file)));
+                    try {
+                        PreviewWindow preview = opening.get().get(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+                        Platform.runLater(() -> preview.stage().close());
+                    } catch (Exception e) {
+                        System.err.println("Échec: " + file + " (" + e.getMessage() + ")");
+                    }
+                }
+            }
+            if (!files.isEmpty()) {
+                // Chemin des gros fichiers (SanitizingInputStream), quelle que soit la taille du premier
+                Path file = files.get(0);
+                try {
+                    LoadMetrics metrics = new LoadMetrics(file.toString());
+                    Launcher.loadStreaming(SanitizingInputStream.open(file, Launcher.toBaseUrl(file.toFile()),
+                            file.toUri().toURL(), metrics), Launcher.toBaseUrl(file.toFile()), metrics);
+                } catch (Exception e) {
+                    System.err.println("Échec (flux): " + file + " (" + e.getMessage() + ")");
+                }
+            }
+            System.out.println("Entraînement: " + files.size() + " FXML ouverts · " + Startup.summary());
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Erreur: " + e);
+            return 1;
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    /** Étape 3: n lancements --startup-probe; temps jusqu'à la première image, en ms. */
+    private static long[] probe(int n, List<String> jvmOptions) throws IOException, InterruptedException {
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            Result result = exec(command(jvmOptions, List.of(PROBE)), true);
+            Matcher m = FIRST_FRAME.matcher(result.out);
+            times[i] = result.exit == 0 && m.find() ? Long.parseLong(m.group(1)) : -1;
+        }
+        return times;
+    }
+
+    private static long[] probe(int n) throws IOException, InterruptedException {
+        return probe(n, List.of());
+    }
+
+    private static String describe(long[] times) {
+        long median = median(times);
+        return median < 0 ? "?" : median + " ms";
+    }
+
+    private static long median(long[] times) {
+        long[] ok = Arrays.stream(times).filter(t -> t >= 0).sorted().toArray();
+        return ok.length == 0 ? -1 : ok[ok.length / 2];
+    }
+
+    private static void writeReport(Path report, Path archive, long[] before, long[] after) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        JsonWriter json = new JsonWriter(sb);
+        json.beginObject()
+                .name("archive").value(archive.toString())
+                .name("archiveBytes").value(Files.size(archive))
+                .name("firstFrameMsBefore").value(median(before))
+                .name("firstFrameMsAfter").value(median(after))
+                .name("before").beginArray();
+        for (long t : before) json.value(t);
+        json.endArray().name("after").beginArray();
+        for (long t : after) json.value(t);
+        json.endArray().endObject();
+        Files.writeString(report, sb.append('\n'), StandardCharsets.UTF_8);
+    }
+
+    /** L'application tourne-t-elle depuis une image jlink (classes dans lib/modules) ? */
+    private static boolean runtimeImage() {
+        var url = Training.class.getResource("Training.class");
+        return url != null && "jrt".equals(url.getProtocol());
+    }
+
+    /**
+     * Commande d'une JVM enfant identique à celle-ci (options -D, -X..., classpath ou
+     * module principal), plus jvmOptions; appArgs null = pas de classe principale.
+     */
+    private static List<String> command(List<String> jvmOptions, List<String> appArgs) {
+        List<String> cmd = new ArrayList<>();
+        boolean windows = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", windows ? "java.exe" : "java").toString());
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // Options de CDS de ce processus: remplacées par celles de l'étape
+            if (arg.startsWith("-Xshare") || arg.startsWith("-XX:SharedArchiveFile") || arg.startsWith("-XX:SharedClassListFile")
+                    || arg.startsWith("-XX:DumpLoadedClassList") || arg.startsWith("-XX:ArchiveClassesAtExit")
+                    || arg.startsWith("-agentlib:jdwp")) {
+                continue;
+            }
+            cmd.add(arg);
+        }
+        cmd.addAll(jvmOptions);
+        String module = System.getProperty("jdk.module.main");
+        if (module != null) {
+            String modulePath = System.getProperty("jdk.module.path");
+            if (modulePath != null) cmd.addAll(List.of("--module-path", modulePath));
+            if (appArgs != null) cmd.addAll(List.of("-m", module + "/" + MAIN_CLASS));
+        } else {
+            cmd.addAll(List.of("-cp", System.getProperty("java.class.path")));
+            if (appArgs != null) cmd.add(MAIN_CLASS);
+        }
+        if (appArgs != null) cmd.addAll(appArgs);
+        return cmd;
+    }
+
+    private record Result(int exit, String out) {}
+
+    /** Lance la commande (sorties héritées, ou sortie standard capturée). */
+    private static Result exec(List<String> command, boolean capture) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(false);
+        if (capture) {
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        } else {
+            builder.inheritIO();
+        }
+        Process process = builder.start();
+        String out = "";
+        if (capture) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                in.transferTo(bytes);
+            }
+            out = bytes.toString(StandardCharsets.UTF_8);
+        }
+        if (!process.waitFor(CHILD_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("Délai dépassé: " + String.join(" ", command));
+        }
+        return new Result(process.exitValue(), out);
+    }
+}
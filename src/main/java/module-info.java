@@ -0,0 +1,16 @@
+/**
+ * Module de l'application, pour l'image autonome (mvn javafx:jlink) et javafx:run;
+ * les modes lancés avec -cp (rendu sans affichage, benchmarks) l'ignorent. FXMLLoader
+ * instancie LazyPane et règle ses propriétés par réflexion: paquet ouvert à javafx.fxml.
+ */
+module com.testview.fx {
+    requires javafx.controls;
+    requires javafx.fxml;
+    requires java.management;
+    requires java.net.http;
+    requires jdk.httpserver;
+    requires jdk.jfr;
+
+    exports com.testview.fx to javafx.graphics;
+    opens com.testview.fx to javafx.fxml;
+}
@@ -0,0 +1,81 @@
+package com.testview.fx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Non-régression du sanitizer sur le corpus de src/test/resources/com/testview/fx/sanitizer
+ * (voir le README du corpus). Pour chaque cas, prepare(...) doit donner le résultat attendu,
+ * et le même que sanitizeInlineIncludes(...) suivi de stripStylesheets(...) et
+ * extractStylesheetUrls(...). Quand l'ancien pipeline par expressions régulières donnait
+ * autre chose (legacy.*), la différence doit être réelle et décrite dans le README.
+ */
+class FxmlSanitizerCorpusTest {
+
+    @TestFactory
+    Stream<DynamicTest> corpus() throws Exception {
+        Path root = Path.of(FxmlSanitizerCorpusTest.class.getResource("sanitizer/README.md").toURI()).getParent();
+        String readme = Files.readString(root.resolve("README.md"));
+        List<Path> cases;
+        try (Stream<Path> list = Files.list(root)) {
+            cases = list.filter(Files::isDirectory).sorted().toList();
+        }
+        assertTrue(cases.size() >= 10, "corpus incomplet: " + cases);
+        return cases.stream().map(dir -> DynamicTest.dynamicTest(dir.getFileName().toString(), () -> check(dir, readme)));
+    }
+
+    private static void check(Path dir, String readme) throws IOException {
+        String name = dir.getFileName().toString();
+        String xml = Files.readString(dir.resolve("main.fxml"));
+        URL base = dir.toUri().toURL();
+
+        FxmlSanitizer.Prepared prepared = FxmlSanitizer.prepare(xml, base);
+        String inlined = FxmlSanitizer.sanitizeInlineIncludes(xml, base);
+        assertEquals(FxmlSanitizer.stripStylesheets(inlined), prepared.fxml(), name + ": prepare / stripStylesheets");
+        assertEquals(FxmlSanitizer.extractStylesheetUrls(inlined), prepared.stylesheets(),
+                name + ": prepare / extractStylesheetUrls");
+
+        String fxml = normalize(prepared.fxml(), base);
+        String stylesheets = normalize(lines(prepared.stylesheets()), base);
+        assertEquals(read(dir, "expected.fxml"), fxml, name + ": expected.fxml");
+        assertEquals(read(dir, "expected-stylesheets.txt"), stylesheets, name + ": expected-stylesheets.txt");
+
+        boolean legacyFxml = Files.exists(dir.resolve("legacy.fxml"));
+        boolean legacyStylesheets = Files.exists(dir.resolve("legacy-stylesheets.txt"));
+        if (legacyFxml) assertNotEquals(read(dir, "legacy.fxml"), fxml, name + ": legacy.fxml sans différence");
+        if (legacyStylesheets) {
+            assertNotEquals(read(dir, "legacy-stylesheets.txt"), stylesheets,
+                    name + ": legacy-stylesheets.txt sans différence");
+        }
+        if (legacyFxml || legacyStylesheets) {
+            assertTrue(readme.contains("\n" + name + "\n"), name + ": différence non décrite dans le README du corpus");
+        }
+    }
+
+    /** Remplace l'URL du cas par ${base} et le message d'un include illisible par ${error}. */
+    private static String normalize(String s, URL base) {
+        return s.replace(base.toExternalForm(), "${base}")
+                .replaceAll("(<!-- Impossible d'inclure: .*? : ).*? -->", "$1\\${error} -->");
+    }
+
+    private static String lines(List<String> values) {
+        return values.stream().map(v -> v + "\n").collect(Collectors.joining());
+    }
+
+    private static String read(Path dir, String file) throws IOException {
+        return Files.readString(dir.resolve(file), StandardCharsets.UTF_8);
+    }
+}